@@ -0,0 +1,173 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The text resources bundled in the plugin jar.
+ * <p>
+ * The resources are read once, when this class is initialized, and kept as
+ * byte arrays for the life of the plugin class loader. Repeated goal
+ * executions in a long lived JVM (mvnd, an IDE) never touch the jar again.
+ * The jar is read with URL caching disabled so no <tt>JarFile</tt> handle is
+ * left open behind the loaded bytes.
+ */
+class BundledResources
+{
+   public static final String LICENSE = WriteLicense.DEFAULT_LICENSE;
+   public static final String COPYRIGHT = WriteCopyright.DEFAULT_COPYRIGHT_FILE;
+   public static final String LOGBACK_TEMPLATE = WriteLogbackXml.TEMPLATE;
+
+   private static final Map<String,byte[]> resources = load(LICENSE, COPYRIGHT, LOGBACK_TEMPLATE);
+
+   private BundledResources()
+   {
+   }
+
+   /** Returns true if the resource was found in the plugin jar. */
+   public static boolean exists(String name)
+   {
+      return resources.containsKey(name);
+   }
+
+   /**
+    * Returns a copy of the resource's bytes, or null if the resource is not
+    * bundled with the plugin.
+    */
+   public static byte[] bytes(String name)
+   {
+      byte[] bytes = resources.get(name);
+      return bytes == null ? null : bytes.clone();
+   }
+
+   /**
+    * Returns a stream over the cached bytes of the resource, or null if the
+    * resource is not bundled with the plugin.
+    */
+   public static InputStream open(String name)
+   {
+      byte[] bytes = resources.get(name);
+      if (bytes == null)
+      {
+         return null;
+      }
+      return new ByteArrayInputStream(bytes);
+   }
+
+   /**
+    * Returns a Reader over the resource, or null if the resource is not
+    * bundled with the plugin.
+    */
+   public static Reader reader(String name)
+   {
+      InputStream stream = open(name);
+      if (stream == null)
+      {
+         return null;
+      }
+      return new InputStreamReader(stream, GeneratedFiles.UTF8);
+   }
+
+   /**
+    * Returns the lines of the resource, or null if the resource is not
+    * bundled with the plugin. The list can not be modified.
+    */
+   public static List<String> lines(String name)
+   {
+      Reader reader = reader(name);
+      if (reader == null)
+      {
+         return null;
+      }
+      List<String> lines = new LinkedList<String>();
+      BufferedReader breader = new BufferedReader(reader);
+      try
+      {
+         String line = breader.readLine();
+         while (line != null)
+         {
+            lines.add(line);
+            line = breader.readLine();
+         }
+      }
+      catch (IOException e)
+      {
+         // Reading from a byte array does not fail.
+         throw new IllegalStateException(e);
+      }
+      return Collections.unmodifiableList(lines);
+   }
+
+   private static Map<String,byte[]> load(String... names)
+   {
+      Map<String,byte[]> result = new HashMap<String,byte[]>();
+      ClassLoader loader = BundledResources.class.getClassLoader();
+      for (String name : names)
+      {
+         URL url = loader.getResource(name);
+         if (url == null)
+         {
+            continue;
+         }
+         try
+         {
+            result.put(name, read(url));
+         }
+         catch (IOException e)
+         {
+            // Treated the same as a missing resource; the goals report it.
+         }
+      }
+      return Collections.unmodifiableMap(result);
+   }
+
+   private static byte[] read(URL url) throws IOException
+   {
+      URLConnection connection = url.openConnection();
+      connection.setUseCaches(false);
+      InputStream in = connection.getInputStream();
+      try
+      {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int n;
+         while ((n = in.read(buffer)) > 0)
+         {
+            bytes.write(buffer, 0, n);
+         }
+         return bytes.toByteArray();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+}
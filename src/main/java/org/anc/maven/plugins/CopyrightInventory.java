@@ -0,0 +1,303 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import org.anc.maven.plugins.header.HeaderStamper;
+import org.anc.maven.plugins.header.InventoryScanner;
+import org.anc.maven.plugins.telemetry.Telemetry;
+
+/**
+ * Writes an inventory of the license and copyright notices found at the top
+ * of every source file in a tree.
+ * <p>
+ * Each file is classified by the copyright holder it names (<tt>ours</tt>,
+ * <tt>other</tt> or <tt>none</tt>) and by which of the configured
+ * <code>patterns</code> occur in its first <code>headerBytes</code>. The
+ * report is a tab separated file with one line per file. The patterns are
+ * matched in a single pass per file (see {@link InventoryScanner}).
+ * <p>
+ * The latest year in each copyright line is reported as well, and a notice
+ * whose latest year is before <code>staleYear</code> is flagged as stale.
+ *
+ * @goal copyright-inventory
+ */
+public class CopyrightInventory extends AbstractMojo
+{
+   public static final String[] DEFAULT_PATTERNS = {
+      "Copyright",
+      "All rights reserved",
+      "Apache License",
+      "GNU General Public License",
+      "GNU Lesser General Public License",
+      "GNU Affero General Public License",
+      "MIT License",
+      "BSD",
+      "Mozilla Public License",
+      "Eclipse Public License",
+      "Public Domain"
+   };
+
+   protected static final Pattern YEAR = Pattern.compile("\\b(?:19|20)\\d{2}\\b");
+
+   /**
+    * Root of the tree to scan.
+    *
+    * @parameter expression="${inventory.root}" default-value="${basedir}"
+    */
+   protected File root;
+
+   /**
+    * Comma separated list of the file extensions to scan.
+    *
+    * @parameter expression="${inventory.extensions}" default-value="java,groovy"
+    */
+   protected String extensions;
+
+   /**
+    * Comma separated list of directory names that are not scanned. Hidden
+    * directories are never scanned.
+    *
+    * @parameter expression="${inventory.excludes}" default-value="target"
+    */
+   protected String excludes;
+
+   /**
+    * The license and holder patterns to look for. Matching ignores case.
+    * Defaults to common license names and the word "Copyright".
+    *
+    * @parameter
+    */
+   protected List<String> patterns;
+
+   /**
+    * Our copyright holder. A copyright line that does not mention the holder
+    * is reported as <tt>other</tt>.
+    *
+    * @parameter expression="${inventory.holder}" default-value="The American National Corpus"
+    */
+   protected String holder;
+
+   /**
+    * Copyright notices whose latest year is before this year are reported
+    * as stale. Zero uses the current year.
+    *
+    * @parameter expression="${inventory.staleYear}" default-value="0"
+    */
+   protected Integer staleYear;
+
+   /**
+    * Number of bytes at the start of each file that are scanned.
+    *
+    * @parameter expression="${inventory.headerBytes}" default-value="8192"
+    */
+   protected Integer headerBytes;
+
+   /**
+    * Number of files scanned at once. Zero uses one thread per available
+    * processor.
+    *
+    * @parameter expression="${inventory.threads}" default-value="0"
+    */
+   protected Integer threads;
+
+   /**
+    * Where the report is written.
+    *
+    * @parameter expression="${inventory.report}" default-value="${project.build.directory}/copyright-inventory.tsv"
+    */
+   protected File report;
+
+   public void execute() throws MojoExecutionException
+   {
+      if (!root.isDirectory())
+      {
+         throw new MojoExecutionException("Directory not found : " + root.getPath());
+      }
+      Telemetry.Span span = Telemetry.get().traversal(root.getPath());
+      List<File> files = HeaderStamper.collect(root, new InventoryFilter(extensions, excludes));
+      span.files(files.size()).end();
+      getLog().info("Scanning " + files.size() + " files in " + root.getPath());
+
+      InventoryScanner scanner = new InventoryScanner(
+            patterns == null || patterns.isEmpty() ? Arrays.asList(DEFAULT_PATTERNS) : patterns);
+      scanner.setHeaderBytes(headerBytes);
+      int n = threads == null ? 1 : threads;
+      scanner.setThreads(n > 0 ? n : Runtime.getRuntime().availableProcessors());
+      List<InventoryScanner.Entry> entries = scanner.scan(files);
+
+      write(entries);
+   }
+
+   protected void write(List<InventoryScanner.Entry> entries) throws MojoExecutionException
+   {
+      Map<String,Integer> counts = new LinkedHashMap<String,Integer>();
+      counts.put("ours", 0);
+      counts.put("other", 0);
+      counts.put("none", 0);
+      counts.put("stale", 0);
+      int stale = staleYear == null || staleYear <= 0 ? HeaderStamper.currentYear() : staleYear;
+      String rootPath = root.getAbsolutePath() + File.separator;
+      File dir = report.getAbsoluteFile().getParentFile();
+      if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+      {
+         throw new MojoExecutionException("Unable to create " + dir.getPath());
+      }
+      PrintWriter out = null;
+      try
+      {
+         out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(report),
+               GeneratedFiles.UTF8));
+         out.println("path\tholder\tyear\tstale\tpatterns\tcopyright");
+         for (InventoryScanner.Entry entry : entries)
+         {
+            String path = entry.getFile().getAbsolutePath();
+            if (path.startsWith(rootPath))
+            {
+               path = path.substring(rootPath.length());
+            }
+            path = path.replace(File.separatorChar, '/');
+            if (entry.getError() != null)
+            {
+               getLog().warn("Unable to read " + path + " : " + entry.getError());
+               out.println(path + "\terror\t\t\t\t" + clean(entry.getError()));
+               continue;
+            }
+            String owner = owner(entry.getCopyright());
+            counts.put(owner, counts.get(owner) + 1);
+            StringBuilder found = new StringBuilder();
+            for (String pattern : entry.getMatches())
+            {
+               if (found.length() > 0)
+               {
+                  found.append(',');
+               }
+               found.append(pattern);
+               Integer count = counts.get(pattern);
+               counts.put(pattern, count == null ? 1 : count + 1);
+            }
+            int year = latestYear(entry.getCopyright());
+            boolean isStale = year > 0 && year < stale;
+            if (isStale)
+            {
+               counts.put("stale", counts.get("stale") + 1);
+            }
+            out.println(path + "\t" + owner + "\t" + (year > 0 ? Integer.toString(year) : "")
+                  + "\t" + isStale + "\t" + found + "\t"
+                  + (entry.getCopyright() == null ? "" : clean(entry.getCopyright())));
+         }
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException("Error writing " + report.getPath(), e);
+      }
+      finally
+      {
+         if (out != null)
+         {
+            out.close();
+         }
+      }
+      for (Map.Entry<String,Integer> count : counts.entrySet())
+      {
+         getLog().info(count.getKey() + " : " + count.getValue());
+      }
+      getLog().info("Wrote " + report.getPath());
+   }
+
+   protected String owner(String copyright)
+   {
+      if (copyright == null)
+      {
+         return "none";
+      }
+      return copyright.toLowerCase().contains(holder.toLowerCase()) ? "ours" : "other";
+   }
+
+   /** Returns the latest year in a copyright line, or 0 if it has none. */
+   protected static int latestYear(String copyright)
+   {
+      int latest = 0;
+      if (copyright == null)
+      {
+         return latest;
+      }
+      Matcher m = YEAR.matcher(copyright);
+      while (m.find())
+      {
+         latest = Math.max(latest, Integer.parseInt(m.group()));
+      }
+      return latest;
+   }
+
+   protected static String clean(String text)
+   {
+      return text.replace('\t', ' ');
+   }
+}
+
+class InventoryFilter implements FileFilter
+{
+   protected Set<String> extensions = new HashSet<String>();
+   protected Set<String> excludes = new HashSet<String>();
+
+   public InventoryFilter(String extensions, String excludes)
+   {
+      for (String extension : extensions.split(","))
+      {
+         if (extension.trim().length() > 0)
+         {
+            this.extensions.add(extension.trim());
+         }
+      }
+      if (excludes != null)
+      {
+         for (String exclude : excludes.split(","))
+         {
+            this.excludes.add(exclude.trim());
+         }
+      }
+   }
+
+   public boolean accept(File file)
+   {
+      String name = file.getName();
+      if (file.isDirectory())
+      {
+         return !name.startsWith(".") && !excludes.contains(name);
+      }
+      int dot = name.lastIndexOf('.');
+      return dot >= 0 && extensions.contains(name.substring(dot + 1));
+   }
+}
@@ -0,0 +1,261 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the effective inputs and the outputs of a goal execution so the
+ * next execution can tell whether there is anything to do.
+ * <p>
+ * The fingerprint is a small text file, one <tt>key=value</tt> line per
+ * input followed by one line per output. Files are recorded by their path
+ * relative to the project's base directory and the SHA-256 of their
+ * content, so the fingerprint is the same in every checkout and on every
+ * machine and can serve as a declared input set for build cache extensions.
+ * A goal is up to date when the stored fingerprint is identical to the
+ * current one, which also means the outputs still exist with the content
+ * they were written with.
+ * <p>
+ * To avoid reading the files on every build, the fingerprint file also
+ * keeps a local cache of the length, modification time and hash of each
+ * file, on lines starting with '#'. These lines are not part of the
+ * fingerprint; a file whose length and modification time are unchanged is
+ * not hashed again.
+ */
+class Fingerprint
+{
+   protected static final String STAT = "#stat ";
+
+   protected File file;
+   protected File base;
+   protected Map<String,Object> inputs = new TreeMap<String,Object>();
+   protected List<File> outputs = new LinkedList<File>();
+   protected Map<String,String> stats = new HashMap<String,String>();
+   protected Map<String,String> hashed = new TreeMap<String,String>();
+
+   /**
+    * @param directory where fingerprints are stored, normally
+    * <tt>target/anc-maven-plugin</tt>. May be null, in which case the goal is
+    * never considered up to date and nothing is saved.
+    * @param goal the name of the goal.
+    * @param base the directory file paths are recorded relative to, normally
+    * the project's base directory.
+    * @param output the file the goal writes. The file name is the goal
+    * followed by a hash of this file's relative path, so executions of the
+    * same goal that write different files keep separate fingerprints.
+    */
+   public Fingerprint(File directory, String goal, File base, File output)
+   {
+      this.base = base;
+      if (directory != null)
+      {
+         byte[] path = relativePath(output).getBytes(GeneratedFiles.UTF8);
+         String id = hex(GeneratedFiles.digest(path)).substring(0, 12);
+         file = new File(directory, goal + "-" + id + ".fingerprint");
+      }
+      outputs.add(output);
+   }
+
+   public Fingerprint input(String key, Object value)
+   {
+      inputs.put(key, String.valueOf(value));
+      return this;
+   }
+
+   /** Records a file by relative path and content hash. */
+   public Fingerprint input(String key, File input)
+   {
+      inputs.put(key, input);
+      return this;
+   }
+
+   /** Records the content of a resource bundled with the plugin. */
+   public Fingerprint resource(String key, String name)
+   {
+      byte[] content = BundledResources.bytes(name);
+      return input(key, content == null ? "missing" : hex(GeneratedFiles.digest(content)));
+   }
+
+   /** Records another file the goal writes. */
+   public Fingerprint output(File output)
+   {
+      outputs.add(output);
+      return this;
+   }
+
+   /** Returns true if the stored fingerprint matches the current one. */
+   public boolean isUpToDate()
+   {
+      if (file == null || !file.isFile())
+      {
+         return false;
+      }
+      try
+      {
+         String stored = load();
+         return render().equals(stored);
+      }
+      catch (IOException e)
+      {
+         return false;
+      }
+   }
+
+   /** Stores the fingerprint; called after the outputs have been written. */
+   public void save() throws IOException
+   {
+      if (file == null)
+      {
+         return;
+      }
+      if (stats.isEmpty() && file.isFile())
+      {
+         load();
+      }
+      String fingerprint = render();
+      StringBuilder buffer = new StringBuilder(fingerprint);
+      for (Map.Entry<String,String> entry : hashed.entrySet())
+      {
+         buffer.append(STAT).append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+      }
+      GeneratedFiles.writeIfChanged(file, buffer.toString().getBytes(GeneratedFiles.UTF8));
+   }
+
+   protected String render() throws IOException
+   {
+      hashed.clear();
+      StringBuilder buffer = new StringBuilder();
+      for (Map.Entry<String,Object> entry : inputs.entrySet())
+      {
+         Object value = entry.getValue();
+         buffer.append(entry.getKey()).append('=')
+               .append(value instanceof File ? describe((File) value) : value).append('\n');
+      }
+      for (File output : outputs)
+      {
+         buffer.append("output=").append(describe(output)).append('\n');
+      }
+      return buffer.toString();
+   }
+
+   /**
+    * Reads the stored fingerprint, keeping its stat cache, and returns the
+    * fingerprint without the cache lines.
+    */
+   protected String load() throws IOException
+   {
+      StringBuilder fingerprint = new StringBuilder();
+      for (String line : read().split("\n"))
+      {
+         if (line.startsWith(STAT))
+         {
+            int equals = line.lastIndexOf('=');
+            if (equals > 0)
+            {
+               stats.put(line.substring(STAT.length(), equals), line.substring(equals + 1));
+            }
+         }
+         else if (line.length() > 0)
+         {
+            fingerprint.append(line).append('\n');
+         }
+      }
+      return fingerprint.toString();
+   }
+
+   protected String read() throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         byte[] buffer = new byte[4096];
+         int n;
+         while ((n = in.read(buffer)) > 0)
+         {
+            bytes.write(buffer, 0, n);
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+      return new String(bytes.toByteArray(), GeneratedFiles.UTF8);
+   }
+
+   /** Returns the relative path and content hash of a file. */
+   protected String describe(File f) throws IOException
+   {
+      String path = relativePath(f);
+      if (!f.isFile())
+      {
+         return path + ",missing";
+      }
+      return path + "," + hash(f);
+   }
+
+   /**
+    * Returns the SHA-256 of the file, reusing the cached hash when the file's
+    * length and modification time have not changed.
+    */
+   protected String hash(File f) throws IOException
+   {
+      String key = f.getAbsolutePath() + "," + f.length() + "," + f.lastModified();
+      String hash = stats.get(key);
+      if (hash == null)
+      {
+         hash = hex(GeneratedFiles.digest(f));
+      }
+      hashed.put(key, hash);
+      return hash;
+   }
+
+   protected String relativePath(File f)
+   {
+      String path = f.getAbsolutePath();
+      if (base != null)
+      {
+         String root = base.getAbsolutePath() + File.separator;
+         if (path.startsWith(root))
+         {
+            path = path.substring(root.length());
+         }
+      }
+      return path.replace(File.separatorChar, '/');
+   }
+
+   protected static String hex(byte[] bytes)
+   {
+      StringBuilder buffer = new StringBuilder();
+      for (byte b : bytes)
+      {
+         buffer.append(Character.forDigit((b >> 4) & 0xF, 16));
+         buffer.append(Character.forDigit(b & 0xF, 16));
+      }
+      return buffer.toString();
+   }
+}
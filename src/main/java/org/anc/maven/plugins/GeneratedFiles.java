@@ -0,0 +1,149 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.anc.maven.plugins.telemetry.Telemetry;
+
+/**
+ * Helpers for writing generated files only when their content changes.
+ * <p>
+ * Leaving an identical file untouched keeps its timestamp, so incremental
+ * packaging and up-to-date checks further down the build see no change.
+ */
+class GeneratedFiles
+{
+   public static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private GeneratedFiles()
+   {
+   }
+
+   /** Joins the lines, terminating each with a '\n'. */
+   public static byte[] toBytes(List<String> lines)
+   {
+      StringBuilder buffer = new StringBuilder();
+      for (String line : lines)
+      {
+         buffer.append(line).append('\n');
+      }
+      return buffer.toString().getBytes(UTF8);
+   }
+
+   /**
+    * Writes <code>content</code> to <code>file</code> unless the file
+    * already has exactly that content. The existing file is only read when
+    * its length matches, and is then compared by SHA-256 digest.
+    *
+    * @return true if the file was written.
+    */
+   public static boolean writeIfChanged(File file, byte[] content) throws IOException
+   {
+      return writeIfChanged(null, file, content);
+   }
+
+   /** As {@link #writeIfChanged(File, byte[])}, recording the goal's write. */
+   public static boolean writeIfChanged(String goal, File file, byte[] content) throws IOException
+   {
+      Telemetry.Span span = Telemetry.get().generatedFile(goal, file.getPath()).bytes(content.length);
+      try
+      {
+         boolean written = write(file, content);
+         span.decision(written ? "written" : "unchanged");
+         return written;
+      }
+      finally
+      {
+         span.end();
+      }
+   }
+
+   protected static boolean write(File file, byte[] content) throws IOException
+   {
+      if (file.length() == content.length && file.isFile()
+            && Arrays.equals(digest(file), digest(content)))
+      {
+         return false;
+      }
+      File dir = file.getAbsoluteFile().getParentFile();
+      if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+      {
+         throw new IOException("Unable to create " + dir.getPath());
+      }
+      OutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(content);
+      }
+      finally
+      {
+         out.close();
+      }
+      return true;
+   }
+
+   public static byte[] digest(byte[] content)
+   {
+      MessageDigest md = sha256();
+      md.update(content);
+      return md.digest();
+   }
+
+   public static byte[] digest(File file) throws IOException
+   {
+      MessageDigest md = sha256();
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         byte[] buffer = new byte[8192];
+         int n;
+         while ((n = in.read(buffer)) > 0)
+         {
+            md.update(buffer, 0, n);
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+      return md.digest();
+   }
+
+   protected static MessageDigest sha256()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         // Every JRE is required to provide SHA-256.
+         throw new IllegalStateException(e);
+      }
+   }
+}
@@ -0,0 +1,47 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.util.Stack;
+
+/**
+ * Tracks the indentation of generated source and configuration files.
+ */
+class IndentationLevel
+{
+   protected String currentIndent = "";
+   protected Stack<String> stack = new Stack<String>();
+   
+   public void more()
+   {
+      stack.push(currentIndent);
+      currentIndent += "\t";
+   }
+      
+   public void less()
+   {
+      if (stack.isEmpty())
+      {
+         currentIndent = "";
+         return;
+      }
+      currentIndent = stack.pop();
+   }
+   
+   @Override
+   public String toString() { return currentIndent; }
+}
\ No newline at end of file
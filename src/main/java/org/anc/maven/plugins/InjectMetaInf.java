@@ -0,0 +1,122 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Adds the license and copyright notice to <tt>META-INF</tt> in the build
+ * output directory so they are packaged in the module's jar without a
+ * separate assembly step.
+ * <p>
+ * The text is rendered exactly as the <tt>license</tt> and <tt>copyright</tt>
+ * goals render it, with '\n' line endings so the packaged resources are the
+ * same on every platform. Files whose content is already identical are not
+ * rewritten.
+ *
+ * @goal meta-inf
+ * @phase process-resources
+ */
+public class InjectMetaInf extends AbstractMojo
+{
+   /** File containing the license text. If omitted the text of the Apache
+    *  2.0 license will be loaded from the jar file.
+    *
+    * @parameter expression="${license}" default-value="LICENSE"
+    */
+   protected File license;
+
+   /** Text file containing the copyright notice. If omitted the notice
+    *  will be loaded from the jar file.
+    *
+    * @parameter expression="${notice.file}" default-value="COPYRIGHT"
+    */
+   protected File noticeFile;
+
+   /**
+    * The directory the META-INF directory will be created in.
+    *
+    * @parameter expression="${project.build.outputDirectory}"
+    * @required
+    */
+   protected File outputDirectory;
+
+   /**
+    * @parameter expression="${meta-inf.license}" default-value="true"
+    */
+   protected Boolean includeLicense;
+
+   /**
+    * @parameter expression="${meta-inf.copyright}" default-value="true"
+    */
+   protected Boolean includeCopyright;
+
+   public void execute() throws MojoExecutionException, MojoFailureException
+   {
+      File metaInf = new File(outputDirectory, "META-INF");
+      if (includeLicense)
+      {
+         WriteLicense writer = new WriteLicense();
+         writer.setLog(getLog());
+         writer.license = license;
+         write(new File(metaInf, WriteLicense.DEFAULT_LICENSE), writer.loadLicense());
+      }
+      if (includeCopyright)
+      {
+         WriteCopyright writer = new WriteCopyright();
+         writer.setLog(getLog());
+         writer.noticeFile = noticeFile;
+         try
+         {
+            write(new File(metaInf, WriteCopyright.DEFAULT_COPYRIGHT_FILE), writer.loadNotice());
+         }
+         catch (IOException e)
+         {
+            throw new MojoExecutionException("Unable to load the copyright notice.", e);
+         }
+      }
+   }
+
+   protected void write(File file, List<String> lines) throws MojoExecutionException
+   {
+      if (lines.isEmpty())
+      {
+         throw new MojoExecutionException("Nothing to write to " + file.getPath());
+      }
+      try
+      {
+         if (GeneratedFiles.writeIfChanged("meta-inf", file, GeneratedFiles.toBytes(lines)))
+         {
+            getLog().info("Wrote " + file.getPath());
+         }
+         else
+         {
+            getLog().info(file.getPath() + " is up to date.");
+         }
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException("Error writing " + file.getPath(), e);
+      }
+   }
+}
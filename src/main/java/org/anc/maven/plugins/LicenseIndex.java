@@ -0,0 +1,338 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Persistent index of the license and notice entries found in artifacts in
+ * the local repository.
+ * <p>
+ * Each artifact is scanned once by looking up its <tt>META-INF/LICENSE*</tt>
+ * and <tt>META-INF/NOTICE*</tt> entries in the zip central directory; only
+ * those entries are inflated. The result is stored in a small properties
+ * file keyed by the artifact coordinate so later builds, and other modules
+ * in the reactor, can skip the jar entirely. An index entry is reused as long
+ * as the size and modification time of the jar are unchanged. The index is
+ * only a cache: if an entry cannot be written the jar is still reported.
+ */
+class LicenseIndex
+{
+   public static final Charset UTF8 = Charset.forName("UTF-8");
+
+   /** Entries larger than this are truncated; no real license is this big. */
+   protected static final int MAX_ENTRY_SIZE = 256 * 1024;
+
+   protected File indexDirectory;
+   protected File localRepository;
+   protected Log log = new SystemStreamLog();
+
+   public LicenseIndex(File indexDirectory, File localRepository)
+   {
+      this.indexDirectory = indexDirectory;
+      this.localRepository = localRepository;
+   }
+
+   public void setLog(Log log) { this.log = log; }
+
+   /**
+    * Returns the <tt>groupId:artifactId:version</tt> coordinate for a jar in
+    * the local repository, or the file name if the jar is not in the local
+    * repository.
+    */
+   public String coordinate(File jar)
+   {
+      String path = relativePath(jar);
+      if (path == null)
+      {
+         return jar.getName();
+      }
+      String[] parts = path.split("/");
+      if (parts.length < 4)
+      {
+         return jar.getName();
+      }
+      int n = parts.length;
+      String version = parts[n - 2];
+      String artifactId = parts[n - 3];
+      StringBuilder group = new StringBuilder(parts[0]);
+      for (int i = 1; i < n - 3; ++i)
+      {
+         group.append('.').append(parts[i]);
+      }
+      String coordinate = group + ":" + artifactId + ":" + version;
+      String prefix = artifactId + "-" + version;
+      String name = parts[n - 1];
+      if (name.startsWith(prefix + "-"))
+      {
+         // Include the classifier.
+         int dot = name.lastIndexOf('.');
+         coordinate += ":" + name.substring(prefix.length() + 1, dot);
+      }
+      return coordinate;
+   }
+
+   /**
+    * Returns the license and notice entries in the jar, keyed by entry name,
+    * from the index if possible.
+    */
+   public Map<String,String> lookup(File jar) throws IOException
+   {
+      File cached = indexFile(jar);
+      Map<String,String> entries = read(cached, jar);
+      if (entries == null)
+      {
+         entries = scan(jar);
+         try
+         {
+            write(cached, jar, entries);
+         }
+         catch (IOException e)
+         {
+            // A read-only or full disk only costs a rescan next time.
+            log.warn("Unable to update the license index " + cached.getPath() + " : " + e.getMessage());
+         }
+      }
+      return entries;
+   }
+
+   /** Reads the license and notice entries directly from the jar. */
+   public static Map<String,String> scan(File jar) throws IOException
+   {
+      Map<String,String> result = new LinkedHashMap<String,String>();
+      ZipFile zip = new ZipFile(jar);
+      try
+      {
+         Enumeration<? extends ZipEntry> entries = zip.entries();
+         while (entries.hasMoreElements())
+         {
+            ZipEntry entry = entries.nextElement();
+            if (isNotice(entry))
+            {
+               InputStream in = zip.getInputStream(entry);
+               try
+               {
+                  result.put(entry.getName(), read(in));
+               }
+               finally
+               {
+                  in.close();
+               }
+            }
+         }
+      }
+      finally
+      {
+         zip.close();
+      }
+      return result;
+   }
+
+   protected static boolean isNotice(ZipEntry entry)
+   {
+      String name = entry.getName();
+      if (entry.isDirectory() || !name.startsWith("META-INF/") || name.indexOf('/', 9) >= 0)
+      {
+         return false;
+      }
+      name = name.substring(9).toUpperCase();
+      return name.startsWith("LICENSE") || name.startsWith("NOTICE");
+   }
+
+   protected static String read(InputStream in) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) > 0 && bytes.size() < MAX_ENTRY_SIZE)
+      {
+         bytes.write(buffer, 0, n);
+      }
+      return new String(bytes.toByteArray(), UTF8);
+   }
+
+   protected File indexFile(File jar)
+   {
+      String path = relativePath(jar);
+      if (path == null)
+      {
+         path = "_external/" + Integer.toHexString(jar.getAbsolutePath().hashCode())
+               + "/" + jar.getName();
+      }
+      return new File(indexDirectory, path + ".properties");
+   }
+
+   /**
+    * Returns the path of the jar relative to the local repository using '/' as
+    * the separator, or null if the jar is not in the local repository.
+    */
+   protected String relativePath(File jar)
+   {
+      if (localRepository == null)
+      {
+         return null;
+      }
+      String root = localRepository.getAbsolutePath();
+      String path = jar.getAbsolutePath();
+      if (!path.startsWith(root + File.separator))
+      {
+         return null;
+      }
+      return path.substring(root.length() + 1).replace(File.separatorChar, '/');
+   }
+
+   /** Returns null if there is no index entry or it is stale. */
+   protected Map<String,String> read(File cached, File jar)
+   {
+      if (!cached.exists())
+      {
+         return null;
+      }
+      Properties props = new Properties();
+      try
+      {
+         InputStream in = new FileInputStream(cached);
+         try
+         {
+            props.load(in);
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      catch (IOException e)
+      {
+         // A damaged index entry is simply rebuilt.
+         return null;
+      }
+      catch (IllegalArgumentException e)
+      {
+         // A malformed unicode escape.
+         return null;
+      }
+      if (!String.valueOf(jar.length()).equals(props.getProperty("size"))
+            || !String.valueOf(jar.lastModified()).equals(props.getProperty("modified")))
+      {
+         return null;
+      }
+      int count;
+      try
+      {
+         count = Integer.parseInt(props.getProperty("entries", ""));
+      }
+      catch (NumberFormatException e)
+      {
+         return null;
+      }
+      if (count < 0)
+      {
+         return null;
+      }
+      Map<String,String> entries = new LinkedHashMap<String,String>();
+      for (int i = 0; i < count; ++i)
+      {
+         String name = props.getProperty("entry." + i + ".name");
+         String text = props.getProperty("entry." + i + ".text");
+         if (name == null || text == null)
+         {
+            // Truncated; treat the whole entry as stale.
+            return null;
+         }
+         entries.put(name, text);
+      }
+      return entries;
+   }
+
+   /**
+    * Writes the index entry to a temporary file and moves it into place so
+    * concurrent builds sharing the index never see a partial file.
+    */
+   protected void write(File cached, File jar, Map<String,String> entries) throws IOException
+   {
+      Properties props = new Properties();
+      props.setProperty("size", String.valueOf(jar.length()));
+      props.setProperty("modified", String.valueOf(jar.lastModified()));
+      props.setProperty("entries", String.valueOf(entries.size()));
+      int i = 0;
+      for (Map.Entry<String,String> entry : entries.entrySet())
+      {
+         props.setProperty("entry." + i + ".name", entry.getKey());
+         props.setProperty("entry." + i + ".text", entry.getValue());
+         ++i;
+      }
+
+      File dir = cached.getParentFile();
+      if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+      {
+         throw new IOException("Unable to create " + dir.getPath());
+      }
+      File temp = File.createTempFile(cached.getName(), ".tmp", dir);
+      try
+      {
+         OutputStream out = new FileOutputStream(temp);
+         try
+         {
+            props.store(out, jar.getName());
+         }
+         finally
+         {
+            out.close();
+         }
+      }
+      catch (IOException e)
+      {
+         temp.delete();
+         throw e;
+      }
+      try
+      {
+         Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (IOException e)
+      {
+         // Not every file system can atomically replace an existing file.
+         try
+         {
+            Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         }
+         catch (IOException again)
+         {
+            temp.delete();
+            throw again;
+         }
+      }
+   }
+}
@@ -0,0 +1,222 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Renders the logback configurations written by the {@link WriteLogbackXml}
+ * goal.
+ * <p>
+ * The <tt>console</tt> preset is the bundled template with any per-package
+ * loggers spliced in before the root logger. The <tt>async</tt> and
+ * <tt>rolling</tt> presets are generated here and wrap their appender in an
+ * <tt>AsyncAppender</tt> so logging calls never wait on I/O.
+ */
+class LogbackConfig
+{
+   public static final String CONSOLE = "console";
+   public static final String ASYNC = "async";
+   public static final String ROLLING = "rolling";
+
+   protected static final String PATTERN = "%date [%thread] %5-level %logger : %msg%n";
+
+   protected String preset = CONSOLE;
+   protected String rootLevel;
+   protected Map<String,String> loggers;
+   protected int queueSize = 8192;
+   protected int discardingThreshold = 0;
+   protected boolean neverBlock = true;
+   protected boolean includeCallerData = false;
+   protected String logFile = "logs/application.log";
+   protected String maxFileSize = "100MB";
+   protected int maxHistory = 30;
+   protected String totalSizeCap = "5GB";
+
+   protected IndentationLevel indent = new IndentationLevel();
+   protected List<String> lines;
+
+   public static boolean isPreset(String name)
+   {
+      return CONSOLE.equals(name) || ASYNC.equals(name) || ROLLING.equals(name);
+   }
+
+   /**
+    * Renders the configuration. The <code>template</code> is only used by
+    * the <tt>console</tt> preset.
+    */
+   public List<String> render(List<String> template)
+   {
+      if (CONSOLE.equals(preset))
+      {
+         return renderTemplate(template);
+      }
+      lines = new LinkedList<String>();
+      indent = new IndentationLevel();
+      line("<configuration>");
+      indent.more();
+      if (ROLLING.equals(preset))
+      {
+         rollingAppender("FILE");
+      }
+      else
+      {
+         consoleAppender("STDOUT");
+      }
+      asyncAppender("ASYNC", ROLLING.equals(preset) ? "FILE" : "STDOUT");
+      loggers();
+      root(level("info"), "ASYNC");
+      indent.less();
+      line("</configuration>");
+      return lines;
+   }
+
+   protected List<String> renderTemplate(List<String> template)
+   {
+      lines = new LinkedList<String>();
+      indent = new IndentationLevel();
+      indent.more();
+      for (String line : template)
+      {
+         String trimmed = line.trim();
+         if (trimmed.startsWith("<root"))
+         {
+            loggers();
+            if (rootLevel != null)
+            {
+               line = line.replaceFirst("level=\"[^\"]*\"", 
+                     Matcher.quoteReplacement("level=\"" + escape(rootLevel) + "\""));
+            }
+         }
+         lines.add(line);
+      }
+      return lines;
+   }
+
+   protected void consoleAppender(String name)
+   {
+      line("<appender name=\"" + name + "\" class=\"ch.qos.logback.core.ConsoleAppender\">");
+      indent.more();
+      encoder();
+      indent.less();
+      line("</appender>");
+   }
+
+   protected void rollingAppender(String name)
+   {
+      String base = logFile;
+      String extension = "";
+      int dot = logFile.lastIndexOf('.');
+      if (dot > logFile.lastIndexOf('/'))
+      {
+         base = logFile.substring(0, dot);
+         extension = logFile.substring(dot);
+      }
+      line("<appender name=\"" + name + "\" class=\"ch.qos.logback.core.rolling.RollingFileAppender\">");
+      indent.more();
+      line("<file>" + escape(logFile) + "</file>");
+      line("<rollingPolicy class=\"ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy\">");
+      indent.more();
+      line("<fileNamePattern>" + escape(base) + ".%d{yyyy-MM-dd}.%i" + escape(extension) + ".gz</fileNamePattern>");
+      line("<maxFileSize>" + escape(maxFileSize) + "</maxFileSize>");
+      line("<maxHistory>" + maxHistory + "</maxHistory>");
+      line("<totalSizeCap>" + escape(totalSizeCap) + "</totalSizeCap>");
+      indent.less();
+      line("</rollingPolicy>");
+      line("<immediateFlush>false</immediateFlush>");
+      encoder();
+      indent.less();
+      line("</appender>");
+   }
+
+   protected void asyncAppender(String name, String target)
+   {
+      line("<appender name=\"" + name + "\" class=\"ch.qos.logback.classic.AsyncAppender\">");
+      indent.more();
+      line("<queueSize>" + queueSize + "</queueSize>");
+      line("<discardingThreshold>" + discardingThreshold + "</discardingThreshold>");
+      line("<neverBlock>" + neverBlock + "</neverBlock>");
+      line("<includeCallerData>" + includeCallerData + "</includeCallerData>");
+      line("<appender-ref ref=\"" + target + "\" />");
+      indent.less();
+      line("</appender>");
+   }
+
+   protected void encoder()
+   {
+      line("<encoder>");
+      indent.more();
+      line("<pattern>" + PATTERN + "</pattern>");
+      indent.less();
+      line("</encoder>");
+   }
+
+   protected void loggers()
+   {
+      if (loggers == null)
+      {
+         return;
+      }
+      for (Map.Entry<String,String> entry : loggers.entrySet())
+      {
+         line("<logger name=\"" + escape(entry.getKey()) + "\" level=\"" + escape(entry.getValue()) + "\" />");
+      }
+      line("");
+   }
+
+   protected void root(String level, String appender)
+   {
+      line("<root level=\"" + escape(level) + "\">");
+      indent.more();
+      line("<appender-ref ref=\"" + appender + "\" />");
+      indent.less();
+      line("</root>");
+   }
+
+   protected String level(String defaultLevel)
+   {
+      return rootLevel != null ? rootLevel : defaultLevel;
+   }
+
+   /** Escapes a configured value for use in XML text or attributes. */
+   protected static String escape(String value)
+   {
+      StringBuilder buffer = new StringBuilder(value.length());
+      for (int i = 0; i < value.length(); ++i)
+      {
+         char c = value.charAt(i);
+         switch (c)
+         {
+            case '&': buffer.append("&amp;"); break;
+            case '<': buffer.append("&lt;"); break;
+            case '>': buffer.append("&gt;"); break;
+            case '"': buffer.append("&quot;"); break;
+            case '\'': buffer.append("&apos;"); break;
+            default: buffer.append(c); break;
+         }
+      }
+      return buffer.toString();
+   }
+
+   protected void line(String text)
+   {
+      lines.add(text.length() == 0 ? text : indent + text);
+   }
+}
@@ -0,0 +1,172 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import org.anc.maven.plugins.header.ShardReport;
+
+/**
+ * Combines the reports written by the shards of a sharded <tt>copyright</tt>
+ * execution into one report and one verdict.
+ * <p>
+ * Every shard from 0 to <code>shardCount - 1</code> must have written its
+ * report, and all of them must have been run with the same shard count and
+ * mode. The build fails if any file could not be processed or, when the
+ * shards were checking, if any file is missing its notice or has an out of
+ * date year.
+ *
+ * @goal copyright-merge
+ */
+public class MergeCopyrightReports extends AbstractMojo
+{
+   /**
+    * Directory containing the shard reports, usually collected from the
+    * machines that ran the shards.
+    *
+    * @parameter expression="${copyright.reportDirectory}" default-value="${project.build.directory}/copyright-report"
+    */
+   protected File reportDirectory;
+
+   /**
+    * The number of shards expected. If zero it is taken from the reports
+    * found.
+    *
+    * @parameter expression="${shardCount}" default-value="0"
+    */
+   protected Integer shardCount;
+
+   /**
+    * Where the merged report is written.
+    *
+    * @parameter expression="${copyright.report}" default-value="${project.build.directory}/copyright-report.txt"
+    */
+   protected File report;
+
+   public void execute() throws MojoExecutionException, MojoFailureException
+   {
+      int count = shardCount == null ? 0 : shardCount;
+      if (count <= 0)
+      {
+         count = findCount();
+      }
+
+      ShardReport merged = null;
+      try
+      {
+         for (int i = 0; i < count; ++i)
+         {
+            File file = new File(reportDirectory, ShardReport.fileName(i, count));
+            if (!file.isFile())
+            {
+               throw new MojoExecutionException("Missing report for shard " + i + " of " + count
+                     + " : " + file.getPath());
+            }
+            ShardReport shard = ShardReport.read(file);
+            if (shard.getShard() != i || shard.getCount() != count)
+            {
+               throw new MojoExecutionException(file.getPath() + " is the report for shard "
+                     + shard.getShard() + " of " + shard.getCount());
+            }
+            if (merged == null)
+            {
+               merged = new ShardReport(0, 1, shard.getMode());
+            }
+            else if (!merged.getMode().equals(shard.getMode()))
+            {
+               throw new MojoExecutionException("Shard " + i + " ran in " + shard.getMode()
+                     + " mode, expected " + merged.getMode());
+            }
+            merged.getEntries().addAll(shard.getEntries());
+         }
+         merged.write(report);
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException(e.getMessage(), e);
+      }
+
+      int changed = merged.count("STAMPED");
+      int failed = merged.count("FAILED");
+      getLog().info("Merged " + count + " shards, " + merged.getEntries().size() + " files.");
+      getLog().info("Wrote " + report.getPath());
+      for (String[] entry : merged.getEntries())
+      {
+         if (entry[0].equals("FAILED"))
+         {
+            getLog().error(entry[1] + " : " + entry[2]);
+         }
+         else if (entry[0].equals("STAMPED") && merged.getMode().startsWith("check"))
+         {
+            getLog().error("Out of date : " + entry[1]);
+         }
+      }
+      if (failed > 0)
+      {
+         throw new MojoFailureException(failed + " files could not be processed.");
+      }
+      if (merged.getMode().startsWith("check") && changed > 0)
+      {
+         throw new MojoFailureException(changed + " files have a missing or out of date copyright notice.");
+      }
+      getLog().info(merged.getMode().startsWith("check") ? "All files are up to date."
+            : "Changed " + changed + " files.");
+   }
+
+   /** Returns the shard count named by the reports in the directory. */
+   protected int findCount() throws MojoExecutionException
+   {
+      String[] names = reportDirectory.list();
+      int count = 0;
+      if (names != null)
+      {
+         for (String name : names)
+         {
+            int of = name.indexOf("-of-");
+            if (!name.startsWith("shard-") || of < 0 || !name.endsWith(".txt"))
+            {
+               continue;
+            }
+            int n;
+            try
+            {
+               n = Integer.parseInt(name.substring(of + 4, name.length() - 4));
+            }
+            catch (NumberFormatException e)
+            {
+               continue;
+            }
+            if (count != 0 && n != count)
+            {
+               throw new MojoExecutionException("Reports for different shard counts found in "
+                     + reportDirectory.getPath() + "; set shardCount.");
+            }
+            count = n;
+         }
+      }
+      if (count == 0)
+      {
+         throw new MojoExecutionException("No shard reports found in " + reportDirectory.getPath());
+      }
+      return count;
+   }
+}
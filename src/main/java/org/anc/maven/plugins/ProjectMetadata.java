@@ -0,0 +1,518 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import org.anc.maven.plugins.header.HeaderStamper;
+import org.anc.maven.plugins.header.NoticeTemplate;
+import org.anc.maven.plugins.header.SourceFilter;
+
+/**
+ * Produces all of the generated project metadata in one execution: the
+ * VERSION file, the version class, the LICENSE and COPYRIGHT files, the
+ * logback configurations and the copyright headers of the source files.
+ * <p>
+ * This replaces separate executions of the <tt>version</tt>,
+ * <tt>version-class</tt>, <tt>license</tt>, <tt>copyright</tt> and
+ * <tt>logback</tt> goals. The configuration is resolved once, the bundled
+ * texts are read once through {@link BundledResources}, and the content of
+ * every output is computed before anything is written. The files are then
+ * written concurrently, each only if its content changed, while the source
+ * headers are stamped. Outputs that lie inside the source tree, such as the
+ * version class, are never stamped.
+ * <p>
+ * The files are written with '\n' line endings, so the output is the same
+ * on every platform. The logback configurations take the same settings as
+ * the <tt>logback</tt> goal; with <tt>logback.overwrite=never</tt> existing
+ * files are kept, otherwise they are replaced when their content changes.
+ *
+ * @goal project-metadata
+ * @phase generate-sources
+ */
+public class ProjectMetadata extends AbstractMojo
+{
+   public static final String VERSION = "version";
+   public static final String VERSION_CLASS = "version-class";
+   public static final String LICENSE = "license";
+   public static final String COPYRIGHT = "copyright";
+   public static final String LOGBACK = "logback";
+   public static final String HEADERS = "headers";
+
+   /**
+    * Comma separated list of the outputs to produce, from <tt>version</tt>,
+    * <tt>version-class</tt>, <tt>license</tt>, <tt>copyright</tt>,
+    * <tt>logback</tt> and <tt>headers</tt>.
+    *
+    * @parameter expression="${metadata.outputs}" default-value="version,version-class,license,copyright,logback,headers"
+    */
+   protected String outputs;
+
+   /**
+    * @parameter expression="${project.version}"
+    * @required
+    */
+   protected String version;
+
+   /**
+    * Where the version number is written.
+    *
+    * @parameter expression="${metadata.versionFile}" default-value="${basedir}/VERSION"
+    */
+   protected File versionFile;
+
+   /**
+    * Package of the generated version class.
+    *
+    * @parameter expression="${package.name}" default-value="${project.groupId}"
+    * @required
+    */
+   protected String packageName;
+
+   /**
+    * Name of the generated version class.
+    *
+    * @parameter expression="${class.name}" default-value="Version"
+    */
+   protected String className;
+
+   /**
+    * Root of the source tree; the version class is written here and the
+    * headers of the files below it are stamped.
+    *
+    * @parameter alias="source" expression="${src.dir}" default-value="${project.build.sourceDirectory}"
+    */
+   protected File srcDir;
+
+   /**
+    * File containing the license text. If omitted the text of the Apache
+    * 2.0 license will be loaded from the jar file.
+    *
+    * @parameter expression="${license}" default-value="LICENSE"
+    */
+   protected File license;
+
+   /**
+    * Where the license text will be written.
+    *
+    * @parameter expression="${destination}" default-value="${basedir}/LICENSE.txt"
+    */
+   protected File licenseFile;
+
+   /**
+    * Text file containing the copyright notice. If omitted the notice will
+    * be loaded from the jar file.
+    *
+    * @parameter expression="${notice.file}" default-value="COPYRIGHT"
+    */
+   protected File noticeFile;
+
+   /**
+    * Where the copyright notice will be written.
+    *
+    * @parameter expression="${create.file}" default-value="${project.build.directory}/COPYRIGHT"
+    */
+   protected File copyrightFile;
+
+   /**
+    * Determines whether existing copyright notices in the sources will be
+    * replaced.
+    *
+    * @parameter expression="${replace}" default-value="true"
+    */
+   protected Boolean replace;
+
+   /**
+    * Encoding of the source files.
+    *
+    * @parameter expression="${project.build.sourceEncoding}"
+    */
+   protected String encoding;
+
+   /**
+    * Where the first and last commit years of each file are cached when
+    * the notice uses them.
+    *
+    * @parameter expression="${copyright.historyCache}" default-value="${project.build.directory}/anc-maven-plugin/git-years.cache"
+    */
+   protected File historyCache;
+
+   /**
+    * @parameter expression="${logback.main}" default-value="${basedir}/src/main/resources/logback.xml"
+    */
+   protected File logbackMain;
+
+   /**
+    * @parameter expression="${logback.test}" default-value="${basedir}/src/test/resources/logback-test.xml"
+    */
+   protected File logbackTest;
+
+   /**
+    * The logback configuration to generate; one of <tt>console</tt>,
+    * <tt>async</tt> or <tt>rolling</tt>.
+    *
+    * @parameter expression="${logback.preset}" default-value="console"
+    */
+   protected String logbackPreset;
+
+   /**
+    * The logback configuration to generate for the tests, as for the
+    * <tt>logback</tt> goal.
+    *
+    * @parameter expression="${logback.testPreset}" default-value="console"
+    */
+   protected String logbackTestPreset;
+
+   /**
+    * Level for the root logger.
+    *
+    * @parameter expression="${logback.level}"
+    */
+   protected String logbackLevel;
+
+   /**
+    * Per-package logger levels, as for the <tt>logback</tt> goal.
+    *
+    * @parameter
+    */
+   protected Map<String,String> logbackLoggers;
+
+   /**
+    * What to do when a logback configuration already exists; one of
+    * <tt>always</tt>, <tt>never</tt> or <tt>changed</tt>.
+    *
+    * @parameter expression="${logback.overwrite}" default-value="always"
+    */
+   protected String logbackOverwrite;
+
+   /**
+    * @parameter expression="${logback.queueSize}" default-value="8192"
+    */
+   protected Integer logbackQueueSize;
+
+   /**
+    * @parameter expression="${logback.discardingThreshold}" default-value="0"
+    */
+   protected Integer logbackDiscardingThreshold;
+
+   /**
+    * @parameter expression="${logback.neverBlock}" default-value="true"
+    */
+   protected Boolean logbackNeverBlock;
+
+   /**
+    * @parameter expression="${logback.callerData}" default-value="false"
+    */
+   protected Boolean logbackCallerData;
+
+   /**
+    * @parameter expression="${logback.file}" default-value="logs/application.log"
+    */
+   protected String logbackFile;
+
+   /**
+    * @parameter expression="${logback.maxFileSize}" default-value="100MB"
+    */
+   protected String logbackMaxFileSize;
+
+   /**
+    * @parameter expression="${logback.maxHistory}" default-value="30"
+    */
+   protected Integer logbackMaxHistory;
+
+   /**
+    * @parameter expression="${logback.totalSizeCap}" default-value="5GB"
+    */
+   protected String logbackTotalSizeCap;
+
+   /**
+    * Number of threads used to write the outputs and stamp the sources.
+    * Zero uses one thread per available processor.
+    *
+    * @parameter expression="${metadata.threads}" default-value="0"
+    */
+   protected Integer threads;
+
+   public void execute() throws MojoExecutionException, MojoFailureException
+   {
+      Set<String> selected = parseOutputs();
+      NoticeTemplate template = null;
+      if (selected.contains(COPYRIGHT) || selected.contains(HEADERS))
+      {
+         template = loadTemplate();
+      }
+
+      List<Output> plan = plan(selected, template);
+      int n = threads == null ? 0 : threads;
+      if (n <= 0)
+      {
+         n = Runtime.getRuntime().availableProcessors();
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(n, plan.size())));
+      try
+      {
+         List<Future<Boolean>> written = new ArrayList<Future<Boolean>>();
+         for (final Output output : plan)
+         {
+            written.add(executor.submit(new Callable<Boolean>() {
+               public Boolean call() throws IOException
+               {
+                  return GeneratedFiles.writeIfChanged(output.goal, output.file, output.content);
+               }
+            }));
+         }
+
+         // Stamp the sources on this thread while the outputs are written.
+         if (selected.contains(HEADERS))
+         {
+            stampHeaders(template, plan, n);
+         }
+
+         for (int i = 0; i < plan.size(); ++i)
+         {
+            File file = plan.get(i).file;
+            if (get(written.get(i), file))
+            {
+               getLog().info("Wrote " + file.getPath());
+            }
+            else
+            {
+               getLog().info(file.getPath() + " is up to date.");
+            }
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   protected Set<String> parseOutputs() throws MojoFailureException
+   {
+      Set<String> known = new HashSet<String>();
+      known.add(VERSION);
+      known.add(VERSION_CLASS);
+      known.add(LICENSE);
+      known.add(COPYRIGHT);
+      known.add(LOGBACK);
+      known.add(HEADERS);
+      Set<String> selected = new LinkedHashSet<String>();
+      for (String name : outputs.split(","))
+      {
+         name = name.trim();
+         if (name.length() == 0)
+         {
+            continue;
+         }
+         if (!known.contains(name))
+         {
+            throw new MojoFailureException("Unknown output " + name);
+         }
+         selected.add(name);
+      }
+      return selected;
+   }
+
+   /** Computes the content of every output file before any is written. */
+   protected List<Output> plan(Set<String> selected, NoticeTemplate template)
+         throws MojoExecutionException, MojoFailureException
+   {
+      List<Output> plan = new ArrayList<Output>();
+      if (selected.contains(VERSION))
+      {
+         plan.add(new Output(VERSION, versionFile, version.getBytes(GeneratedFiles.UTF8)));
+      }
+      if (selected.contains(VERSION_CLASS))
+      {
+         if (packageName == null)
+         {
+            throw new MojoFailureException("packageName must be set to generate the version class.");
+         }
+         WriteVersionClass writer = new WriteVersionClass();
+         writer.setLog(getLog());
+         writer.packageName = packageName;
+         writer.className = className;
+         writer.version = version;
+         File dir = new File(srcDir, packageName.replace('.', '/'));
+         String source = writer.renderJava().replace(System.getProperty("line.separator"), "\n");
+         plan.add(new Output(VERSION_CLASS, new File(dir, className + ".java"),
+               source.getBytes(GeneratedFiles.UTF8)));
+      }
+      if (selected.contains(LICENSE))
+      {
+         WriteLicense writer = new WriteLicense();
+         writer.setLog(getLog());
+         writer.license = license;
+         List<String> text = writer.loadLicense();
+         if (text.isEmpty())
+         {
+            throw new MojoExecutionException("Nothing to write to " + licenseFile.getPath());
+         }
+         plan.add(new Output(LICENSE, licenseFile, GeneratedFiles.toBytes(text)));
+      }
+      if (selected.contains(COPYRIGHT))
+      {
+         List<String> notice = template.render(HeaderStamper.currentYear());
+         plan.add(new Output(COPYRIGHT, copyrightFile, GeneratedFiles.toBytes(notice)));
+      }
+      if (selected.contains(LOGBACK))
+      {
+         WriteLogbackXml writer = createLogbackWriter();
+         writer.validate();
+         List<String> lines = writer.loadTemplate();
+         File[] files = { logbackMain, logbackTest };
+         String[] presets = { writer.preset, writer.testPreset };
+         for (int i = 0; i < files.length; ++i)
+         {
+            if (WriteLogbackXml.OVERWRITE_NEVER.equals(logbackOverwrite) && files[i].exists())
+            {
+               getLog().info(files[i].getPath() + " already exists, skipping.");
+               continue;
+            }
+            byte[] content = GeneratedFiles.toBytes(writer.configure(presets[i]).render(lines));
+            plan.add(new Output(LOGBACK, files[i], content));
+         }
+      }
+      return plan;
+   }
+
+   /** Returns a logback goal configured with this goal's logback settings. */
+   protected WriteLogbackXml createLogbackWriter()
+   {
+      WriteLogbackXml writer = new WriteLogbackXml();
+      writer.setLog(getLog());
+      writer.mainOutput = logbackMain;
+      writer.testOutput = logbackTest;
+      writer.overwrite = logbackOverwrite == null ? WriteLogbackXml.OVERWRITE_ALWAYS : logbackOverwrite;
+      writer.preset = logbackPreset;
+      writer.testPreset = logbackTestPreset;
+      writer.rootLevel = logbackLevel;
+      writer.loggers = logbackLoggers;
+      writer.queueSize = logbackQueueSize;
+      writer.discardingThreshold = logbackDiscardingThreshold;
+      writer.neverBlock = logbackNeverBlock;
+      writer.callerData = logbackCallerData;
+      writer.logFile = logbackFile;
+      writer.maxFileSize = logbackMaxFileSize;
+      writer.maxHistory = logbackMaxHistory;
+      writer.totalSizeCap = logbackTotalSizeCap;
+      return writer;
+   }
+
+   protected NoticeTemplate loadTemplate() throws MojoExecutionException
+   {
+      WriteCopyright writer = new WriteCopyright();
+      writer.noticeFile = noticeFile;
+      try
+      {
+         return writer.loadTemplate();
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException("Unable to load the copyright notice.", e);
+      }
+   }
+
+   /** Stamps the source headers, skipping any file this goal generates. */
+   protected void stampHeaders(NoticeTemplate template, List<Output> plan, int n)
+         throws MojoExecutionException
+   {
+      if (!srcDir.exists())
+      {
+         getLog().info("No sources to stamp in " + srcDir.getPath());
+         return;
+      }
+      final Set<File> generated = new HashSet<File>();
+      for (Output output : plan)
+      {
+         generated.add(output.file.getAbsoluteFile());
+      }
+      final FileFilter sources = new SourceFilter();
+
+      WriteCopyright writer = new WriteCopyright();
+      writer.setLog(getLog());
+      writer.srcDir = srcDir;
+      writer.replace = replace;
+      writer.encoding = encoding;
+      writer.threads = n;
+      writer.historyCache = historyCache;
+      writer.filter = new FileFilter() {
+         public boolean accept(File file)
+         {
+            return sources.accept(file) && !generated.contains(file.getAbsoluteFile());
+         }
+      };
+      try
+      {
+         writer.process(srcDir, template);
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException(e.getMessage(), e);
+      }
+   }
+
+   protected static boolean get(Future<Boolean> future, File file) throws MojoExecutionException
+   {
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new MojoExecutionException("Interrupted writing " + file.getPath());
+      }
+      catch (ExecutionException e)
+      {
+         throw new MojoExecutionException("Error writing " + file.getPath(), e.getCause());
+      }
+   }
+
+   /** A file to be generated and its content. */
+   protected static class Output
+   {
+      protected final String goal;
+      protected final File file;
+      protected final byte[] content;
+
+      Output(String goal, File file, byte[] content)
+      {
+         this.goal = goal;
+         this.file = file;
+         this.content = content;
+      }
+   }
+}
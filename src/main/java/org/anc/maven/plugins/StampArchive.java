@@ -0,0 +1,124 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import org.anc.maven.plugins.header.HeaderStamper;
+import org.anc.maven.plugins.header.StampResult;
+import org.anc.maven.plugins.header.ZipStamper;
+
+/**
+ * Adds the copyright notice to the Java and Groovy entries of a jar or zip
+ * file, typically a <tt>-sources.jar</tt> that includes generated code.
+ * <p>
+ * The archive is streamed entry by entry to a new archive; entries that do
+ * not change are copied without being recompressed (see {@link ZipStamper}).
+ * With <code>verify</code> set nothing is written and the build fails if any
+ * entry is missing the notice.
+ *
+ * @goal copyright-archive
+ * @phase package
+ */
+public class StampArchive extends WriteCopyright
+{
+   /**
+    * The archive to process.
+    *
+    * @parameter expression="${archive}" default-value="${project.build.directory}/${project.build.finalName}-sources.jar"
+    */
+   protected File archive;
+
+   /**
+    * Where the stamped archive is written. If omitted the archive is
+    * replaced.
+    *
+    * @parameter expression="${archive.output}"
+    */
+   protected File archiveOutput;
+
+   /**
+    * Only check the archive; fail if any entry is missing the notice.
+    *
+    * @parameter expression="${verify}" default-value="false"
+    */
+   protected Boolean verify;
+
+   @Override
+   public void execute() throws MojoExecutionException
+   {
+      if (!archive.isFile())
+      {
+         throw new MojoExecutionException("Archive not found : " + archive.getPath());
+      }
+      log("Archive is : " + archive);
+      log("Notice file is : " + noticeFile);
+
+      File temp = null;
+      int stamped;
+      try
+      {
+         HeaderStamper stamper = createStamper(loadNotice());
+         stamper.setCheck(verify);
+         File output = archiveOutput;
+         if (!verify && output == null)
+         {
+            temp = File.createTempFile(archive.getName(), ".tmp", archive.getAbsoluteFile().getParentFile());
+            output = temp;
+         }
+         List<StampResult> results = new ZipStamper(stamper).process(archive, verify ? null : output);
+         stamped = summarize(results, verify ? "Missing copyright notice in " 
+               : "Adding copyright notice to ");
+         if (temp != null)
+         {
+            if (stamped > 0)
+            {
+               Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            else
+            {
+               // Nothing changed; keep the original archive and its timestamp.
+               temp.delete();
+            }
+            temp = null;
+         }
+      }
+      catch (IOException e)
+      {
+         getLog().error(e);
+         throw new MojoExecutionException(e.getMessage(), e);
+      }
+      finally
+      {
+         if (temp != null)
+         {
+            temp.delete();
+         }
+      }
+      if (verify && stamped > 0)
+      {
+         throw new MojoExecutionException(stamped + " entries in " + archive.getName()
+               + " are missing the copyright notice.");
+      }
+   }
+}
@@ -16,27 +16,34 @@
  */
 package org.anc.maven.plugins;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.Reader;
-import java.util.Calendar;
-import java.util.LinkedList;
+import java.nio.charset.Charset;
 import java.util.List;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 
+import org.anc.maven.plugins.header.GitHistory;
+import org.anc.maven.plugins.header.HeaderStamper;
+import org.anc.maven.plugins.header.NoticeTemplate;
+import org.anc.maven.plugins.header.ShardReport;
+import org.anc.maven.plugins.header.SourceFilter;
+import org.anc.maven.plugins.header.StampResult;
+import org.anc.maven.plugins.header.YearUpdater;
+import org.anc.maven.plugins.telemetry.Telemetry;
+
 /** Adds a copyright notice to the top of every *.java file in a source tree.
  * <p>
- * 
+ * The files are processed by a {@link HeaderStamper}, which can also be run
+ * without Maven from {@link org.anc.maven.plugins.header.Main}. Files that
+ * already start with the notice are not rewritten.
  * 
  * @goal copyright
  *
@@ -51,8 +58,8 @@ public class WriteCopyright extends AbstractMojo
     * <p>
     * This is the directory to be searched for Java source code files, that
     * is, files ending in <code>.java</code>. If {@link #replace} has been set
-    * to <code>true</code> any existing copyright notice will be replaced. If
-    * <code>replace</code> is false (the default) any existing copyright notice
+    * to <code>true</code> (the default) any existing copyright notice will be
+    * replaced. If <code>replace</code> is false any existing copyright notice
     * is left intact.
     *
     * @parameter alias="source" expression="${src.dir}" default-value="${project.build.sourceDirectory}"
@@ -74,7 +81,7 @@ public class WriteCopyright extends AbstractMojo
    /**
     * Determines whether existing copyright notices will be replaced.
     * 
-    * @parameter default-value="Boolean.TRUE" expression="${replace}"
+    * @parameter default-value="true" expression="${replace}"
     */
    protected Boolean replace;
    
@@ -90,8 +97,79 @@ public class WriteCopyright extends AbstractMojo
     * @parameter expression="${notice.file}" default-value="COPYRIGHT"
     */
    protected File noticeFile;
+   
+   /** Encoding of the source files.
+    * 
+    * @parameter expression="${project.build.sourceEncoding}"
+    */
+   protected String encoding;
+   
+   /** Number of files processed at once. Zero uses one thread per 
+    *  available processor.
+    * 
+    * @parameter expression="${copyright.threads}" default-value="0"
+    */
+   protected Integer threads;
+   
+   /** Only bring the year in existing copyright notices up to date. A 
+    *  range such as 2009-2025 is patched in place; a single year such as
+    *  2025 becomes 2025-2026. No notices are added.
+    * 
+    * @parameter expression="${update.year}" default-value="false"
+    */
+   protected Boolean updateYear;
+   
+   /** When updating years, only notices naming this holder are changed.
+    * 
+    * @parameter expression="${copyright.holder}"
+    */
+   protected String holder;
+   
+   /** Where the first and last commit years of each file are cached 
+    *  between builds. Only used when the notice contains %FIRST_YEAR%,
+    *  %LAST_YEAR% or %YEARS%; the cache is brought up to date with the 
+    *  commits made since it was written.
+    * 
+    * @parameter expression="${copyright.historyCache}" default-value="${project.build.directory}/anc-maven-plugin/git-years.cache"
+    */
+   protected File historyCache;
+   
+   /** Only report the files that would be changed; nothing is written.
+    *  Unless the tree is sharded the build fails if any file would be
+    *  changed.
+    * 
+    * @parameter expression="${copyright.check}" default-value="false"
+    */
+   protected Boolean check;
+   
+   /** Index of the shard of the source tree processed by this execution,
+    *  from 0 to shardCount - 1.
+    *  <p>
+    *  A file belongs to the shard given by a hash of its path relative to
+    *  srcDir, so separate processes or machines can each take one shard, 
+    *  for example <code>mvn anc:copyright -Dcopyright.check=true -Dshard=0 
+    *  -DshardCount=3</code>, <code>-Dshard=1</code> and <code>-Dshard=2</code>. 
+    *  Each shard writes its results to reportDirectory and the 
+    *  <tt>copyright-merge</tt> goal combines them into a single verdict.
+    * 
+    * @parameter expression="${shard}" default-value="0"
+    */
+   protected Integer shard;
+   
+   /** Number of shards the source tree is divided into.
+    * 
+    * @parameter expression="${shardCount}" default-value="1"
+    */
+   protected Integer shardCount;
+   
+   /** Where the report of each shard is written when the tree is sharded
+    *  or checked.
+    * 
+    * @parameter expression="${copyright.reportDirectory}" default-value="${project.build.directory}/copyright-report"
+    */
+   protected File reportDirectory;
 
-   protected FileFilter filter = new JavaFilter();
+   protected FileFilter filter = new SourceFilter();
    
    public void execute() throws MojoExecutionException
    {
@@ -103,19 +181,30 @@ public class WriteCopyright extends AbstractMojo
    				+ srcDir.getPath());
    	}
 
+   	if (isSharded() && (shard < 0 || shard >= shardCount))
+   	{
+   		throw new MojoExecutionException("shard must be between 0 and " 
+   				+ (shardCount - 1) + " : " + shard);
+   	}
+
    	log("Source path is : " + srcDir);
    	log("Notice file is : " + noticeFile);
 
       try
       {
-         List<String> notice = loadNotice();
+         NoticeTemplate template = loadTemplate();
+         List<String> notice = template.render(HeaderStamper.currentYear());
       	if (writeFile)
       	{
       		writeNotice(notice);
       	}
+      	else if (updateYear != null && updateYear)
+      	{
+      		updateYears(srcDir);
+      	}
       	else
       	{
-      		process(srcDir, notice);
+      		process(srcDir, template);
       	}
       }
       catch (Exception e)
@@ -127,20 +216,35 @@ public class WriteCopyright extends AbstractMojo
 
    protected void writeNotice(List<String> lines) throws MojoExecutionException
    {
+   	Telemetry.Span span = Telemetry.get().generatedFile("copyright", outputFile.getPath());
    	try
       {
+	      File dir = outputFile.getAbsoluteFile().getParentFile();
+	      if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+	      {
+	      	throw new IOException("Unable to create " + dir.getPath());
+	      }
 	      PrintWriter out = new PrintWriter(new FileWriter(outputFile));
 	      for (String line : lines)
 	      {
 	      	out.println(line);
 	      }
 	      out.close();
+	      if (span.isEnabled())
+	      {
+	      	span.bytes(outputFile.length());
+	      }
+	      span.decision("written");
 	      log("Wrote copyright notice to " + outputFile.getPath());
       }
       catch (IOException e)
       {
 	      throw new MojoExecutionException(e.getMessage());
       }
+   	finally
+   	{
+   		span.end();
+   	}
    }
    
    protected void log(String message)
@@ -156,19 +260,28 @@ public class WriteCopyright extends AbstractMojo
    /** Loads the text of the copyright notice into a list of strings. */
    protected List<String> loadNotice() throws IOException
    {
-      List<String> result = new LinkedList<String>();
-//      BufferedReader reader = new BufferedReader(new FileReader(noticeFile));
-      BufferedReader reader = new BufferedReader(getReader(noticeFile));
-      String line = reader.readLine();
-      Calendar c = Calendar.getInstance();
-      int year = c.get(Calendar.YEAR);
-      while (line != null)
+      return loadTemplate().render(HeaderStamper.currentYear());
+   }
+   
+   protected NoticeTemplate loadTemplate() throws IOException
+   {
+      Telemetry.Span span = Telemetry.get().noticeLoad("copyright", 
+            noticeFile.exists() ? noticeFile.getPath() : DEFAULT_COPYRIGHT_FILE);
+      List<String> text = null;
+      try
+      {
+         text = NoticeTemplate.read(getReader(noticeFile));
+         return new NoticeTemplate(text);
+      }
+      finally
       {
-         line = line.replaceAll("%YEAR%", Integer.toString(year));
-         result.add(line);
-         line = reader.readLine();
+         if (span.isEnabled() && text != null)
+         {
+            // The size of the text read, which may be the bundled notice.
+            span.bytes(GeneratedFiles.toBytes(text).length);
+         }
+         span.end();
       }
-      return result;
    }
 
    /**
@@ -176,6 +289,7 @@ public class WriteCopyright extends AbstractMojo
     * to each file.  If the file <code>file</code> exists the copyright notice will
     * be read from the file. If <code>file</code> does not exist the reader
     * returned will read the COPYRIGHT resource included in the jar file.
+    * The caller must close the Reader.
     * 
     * @throws FileNotFoundException iff <code>File.exists</code> is broken.
     */
@@ -186,109 +300,174 @@ public class WriteCopyright extends AbstractMojo
    		return new FileReader(file);
    	}
    	// else
-   	InputStream stream = this.getClass().getClassLoader().getResourceAsStream(DEFAULT_COPYRIGHT_FILE);
-   	if (stream != null)
-   	{
-   		return new InputStreamReader(stream);
-   	}
-   	return null;
+   	return BundledResources.reader(DEFAULT_COPYRIGHT_FILE);
    }
    
-   protected void process(File file, List<String> notice) throws IOException
+   protected void process(File file, NoticeTemplate template) throws IOException
    {
-      if (file.isFile())
+      int year = HeaderStamper.currentYear();
+      HeaderStamper stamper = createStamper(template.render(year));
+      if (template.isPerFile())
+      {
+         GitHistory history = GitHistory.load(file.isFile() ? file.getAbsoluteFile().getParentFile() : file, historyCache);
+         if (history.getHead() == null)
+         {
+            getLog().warn("No git history for " + file.getPath() + "; every file gets the current year.");
+         }
+         else
+         {
+            log("Read commit years of " + history.size() + " files up to " + history.getHead());
+         }
+         stamper.setNoticeProvider(template.provider(history, year));
+      }
+      stamper.setCheck(isChecking());
+      List<StampResult> results = stamper.process(collect(file));
+      writeReport(file, results, isChecking() ? "check" : "stamp");
+      if (isChecking())
       {
-         addNotice(file, notice);
+         int missing = summarize(results, "Missing copyright notice in ");
+         verdict(missing + " files are missing the copyright notice.", missing);
       }
       else
       {
-         File[] contents = file.listFiles(filter);
-         for (File f : contents)
-         {
-            process(f, notice);
-         }
+         int stamped = summarize(results, "Adding copyright notice to ");
+         log("Added the copyright notice to " + stamped + " files.");
       }
    }
    
+   /** Updates the year in the copyright notice of every file under root. */
+   protected void updateYears(File root) throws IOException
+   {
+      YearUpdater updater = new YearUpdater(HeaderStamper.currentYear());
+      updater.setHolder(holder);
+      updater.setThreads(threadCount());
+      updater.setCheck(isChecking());
+      updater.setTelemetry(Telemetry.get());
+      List<StampResult> results = updater.process(collect(root));
+      writeReport(root, results, isChecking() ? "check-year" : "update-year");
+      if (isChecking())
+      {
+         int stale = summarize(results, "Out of date copyright year in ");
+         verdict(stale + " files have an out of date copyright year.", stale);
+      }
+      else
+      {
+         int updated = summarize(results, "Updating copyright year in ");
+         log("Updated the copyright year in " + updated + " files.");
+      }
+   }
+   
+   /** Returns the source files under root that belong to this shard. */
+   protected List<File> collect(File root)
+   {
+      Telemetry.Span span = Telemetry.get().traversal(root.getPath());
+      List<File> files = HeaderStamper.collect(root, filter);
+      span.files(files.size()).end();
+      if (!isSharded())
+      {
+         return files;
+      }
+      List<File> selected = ShardReport.select(root, files, shard, shardCount);
+      log("Shard " + shard + " of " + shardCount + " has " + selected.size() 
+            + " of " + files.size() + " files.");
+      return selected;
+   }
+   
+   /** Writes this shard's report when the tree is sharded or checked. */
+   protected void writeReport(File root, List<StampResult> results, String mode) throws IOException
+   {
+      if (!isSharded() && !isChecking())
+      {
+         return;
+      }
+      int index = isSharded() ? shard : 0;
+      int count = isSharded() ? shardCount : 1;
+      ShardReport report = new ShardReport(index, count, mode);
+      report.addAll(root.isFile() ? root.getAbsoluteFile().getParentFile() : root, results);
+      File file = new File(reportDirectory, ShardReport.fileName(index, count));
+      report.write(file);
+      log("Wrote " + file.getPath());
+   }
+   
    /**
-    * Loads the Java source code and writes it back to the same file with
-    * the text of the copyright notice prepended.
+    * Fails a check that found <code>count</code> files to change, unless the
+    * tree is sharded; a shard leaves the verdict to <tt>copyright-merge</tt>.
     */
-   protected void addNotice(File file, List<String> notice) throws IOException
+   protected void verdict(String message, int count) throws IOException
    {
-      List<String> code = loadJava(file);
-      if (code == null)
+      if (count == 0)
       {
-         log(file.getPath() + " already contains a copyright notice.");
-         return;
+         log("All files are up to date.");
       }
-      
-      log("Adding copyright notice to " + file.getPath());
-      PrintWriter writer = new PrintWriter(file);
-      for (String s : notice)
+      else if (isSharded())
       {
-         writer.println(s);
+         getLog().warn(message);
       }
-//      writer.println();
-      for (String statement : code)
+      else
       {
-         writer.println(statement);
+         throw new IOException(message);
       }
-      writer.close();
    }
-
+   
+   protected boolean isSharded()
+   {
+      return shardCount != null && shardCount > 1;
+   }
+   
+   protected boolean isChecking()
+   {
+      return check != null && check;
+   }
+   
    /**
-    * Loads the Java source code into a list of strings.  All text before
-    * the <tt>package</tt> statement is discarded.  Each line in the source,
-    * including blank lines, occupies one item in the list.
+    * Logs the results, throwing an exception if any file failed.
+    * 
+    * @return the number of files stamped.
     */
-   protected List<String> loadJava(File java) throws IOException
+   protected int summarize(List<StampResult> results, String action) throws IOException
    {
-      List<String> source = new LinkedList<String>();
-      BufferedReader reader = new BufferedReader(new FileReader(java));
-      
-      // Skip everything until we reach the package declaration
-      String line = reader.readLine();
-      while (line != null && !line.startsWith("package"))
+      int stamped = 0;
+      int failed = 0;
+      for (StampResult result : results)
       {
-//         if (line.contains("Copyright") && !replace)
-//         {
-//            line = null;
-//            break;
-//         }
-         line = reader.readLine();
+         switch (result.getStatus())
+         {
+            case STAMPED:
+               log(action + result.getPath());
+               ++stamped;
+               break;
+            case FAILED:
+               error(result.toString());
+               ++failed;
+               break;
+            default:
+               getLog().debug(result.toString());
+               break;
+         }
       }
-      
-      if (line == null)
+      if (failed > 0)
       {
-         // We either found a copyright statement or reached the end of the 
-         // file without finding a package statement. In either case the 
-         // caller should do nothing.
-         reader.close();
-//         throw new IOException("Unable to locate the package statement in " + java.getPath());
-         return null;
+         throw new IOException(failed + " files could not be processed.");
       }
-      
-      while (line != null)
+      return stamped;
+   }
+   
+   protected HeaderStamper createStamper(List<String> notice)
+   {
+      HeaderStamper stamper = new HeaderStamper(notice);
+      stamper.setReplace(replace == null || replace);
+      if (encoding != null)
       {
-         source.add(line);
-         line = reader.readLine();
+         stamper.setCharset(Charset.forName(encoding));
       }
-      reader.close();
-      return source;
+      stamper.setThreads(threadCount());
+      stamper.setTelemetry(Telemetry.get());
+      return stamper;
    }
    
-}
-
-class JavaFilter implements FileFilter
-{
-	public boolean accept(File file)
-	{
-		if (file.isDirectory())
-		{
-			return true;
-		}
-      String filename = file.getName();
-		return filename.endsWith(".java") || filename.endsWith(".groovy");
-	}
+   protected int threadCount()
+   {
+      int n = threads == null ? 1 : threads;
+      return n > 0 ? n : Runtime.getRuntime().availableProcessors();
+   }
 }
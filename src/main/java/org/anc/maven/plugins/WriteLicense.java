@@ -7,6 +7,8 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
+import org.anc.maven.plugins.telemetry.Telemetry;
+
 /**
  * Goal to write the Apache 2.0 license to a file.
  *
@@ -29,15 +31,72 @@ public class WriteLicense extends AbstractMojo
 	 */
 	protected File destination;
 	
+	/** Directory where the fingerprint of the last execution is kept.
+	 * 
+	 * @parameter default-value="${project.build.directory}/anc-maven-plugin"
+	 */
+	protected File fingerprintDirectory;
+	
+	/** Files are recorded in the fingerprint relative to this directory.
+	 * 
+	 * @parameter default-value="${basedir}"
+	 * @readonly
+	 */
+	protected File basedir;
+	
+	/** Write the license even if it is up to date.
+	 * 
+	 * @parameter expression="${anc.force}" default-value="false"
+	 */
+	protected Boolean force;
+	
 	public void execute() throws MojoExecutionException, MojoFailureException
 	{
+		Fingerprint fingerprint = new Fingerprint(fingerprintDirectory, "license", basedir, destination);
+		if (license.exists())
+		{
+			fingerprint.input("license", license);
+		}
+		else
+		{
+			fingerprint.resource("license", DEFAULT_LICENSE);
+		}
+		if (!force && fingerprint.isUpToDate())
+		{
+			Telemetry.Span span = Telemetry.get().generatedFile("license", destination.getPath());
+			if (span.isEnabled())
+			{
+				span.bytes(destination.length());
+			}
+			span.decision("up-to-date").end();
+			log(destination.getPath() + " is up to date.");
+			return;
+		}
+		
+		Telemetry.Span span = Telemetry.get().noticeLoad("license", 
+				license.exists() ? license.getPath() : DEFAULT_LICENSE);
 		List<String> text = loadLicense();
+		if (span.isEnabled())
+		{
+			// The size of the text read, which may be the bundled license.
+			span.bytes(GeneratedFiles.toBytes(text).length);
+		}
+		span.end();
 		writeLicense(text);
 		log("License file created.");
+		try
+		{
+			fingerprint.save();
+		}
+		catch (IOException e)
+		{
+			getLog().warn("Unable to save the fingerprint : " + e.getMessage());
+		}
 	}
 
 	protected void writeLicense(List<String> text) throws MojoExecutionException
 	{
+		Telemetry.Span span = Telemetry.get().generatedFile("license", destination.getPath());
 		PrintWriter out = null;
 		try
 		{
@@ -54,7 +113,15 @@ public class WriteLicense extends AbstractMojo
 		}
 		finally
 		{
-			out.close();
+			if (out != null)
+			{
+				out.close();
+			}
+			if (span.isEnabled())
+			{
+				span.bytes(destination.length());
+			}
+			span.decision("written").end();
 		}
 	}
 	
@@ -82,13 +149,23 @@ public class WriteLicense extends AbstractMojo
 			log(e);
 			throw new MojoExecutionException(e.getMessage());
 		}
+		finally
+		{
+			try
+			{
+				breader.close();
+			}
+			catch (IOException e)
+			{
+			}
+		}
 		return text;
 	}
 
 	/**
     * @return a Reader object used to read the license test, either from the
     * specified file, or if no file has been specified from the LICENSE 
-    * resource included in the jar file. 
+    * resource included in the jar file. The caller must close the Reader.
     */
    protected Reader getReader()
    {
@@ -107,15 +184,9 @@ public class WriteLicense extends AbstractMojo
 		}
 		else
 		{
-			ClassLoader loader = this.getClass().getClassLoader();
-			InputStream stream = loader.getResourceAsStream(DEFAULT_LICENSE);
-			if (stream == null)
-			{
-				// The list is empty, which will tell the caller there was a 
-				// problem.
-				return null;
-			}
-			reader = new InputStreamReader(stream);
+			// Null if the resource is missing, which will tell the caller there 
+			// was a problem.
+			reader = BundledResources.reader(DEFAULT_LICENSE);
 		}
 	   return reader;
    }
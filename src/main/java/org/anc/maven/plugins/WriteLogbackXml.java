@@ -7,9 +7,22 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
+import org.anc.maven.plugins.telemetry.Telemetry;
+
 /**
  * Writes the default logback XML files to src/main/resources and 
  * src/test/resources.
+ * <p>
+ * The <code>preset</code> parameter selects the configuration that is
+ * written:
+ * <ul>
+ * <li><tt>console</tt> the bundled template; a blocking console appender.</li>
+ * <li><tt>async</tt> a console appender behind an <tt>AsyncAppender</tt>.</li>
+ * <li><tt>rolling</tt> a size and time based rolling file appender behind an 
+ * <tt>AsyncAppender</tt>.</li>
+ * </ul>
+ * The async presets never include caller data and, by default, never block
+ * the logging thread when the queue is full.
  * 
  * @goal logback
  * 
@@ -18,57 +31,226 @@ import org.apache.maven.plugin.MojoFailureException;
  */
 public class WriteLogbackXml extends AbstractMojo
 {
+   public static final String TEMPLATE = "template.xml";
+
+   public static final String OVERWRITE_ALWAYS = "always";
+   public static final String OVERWRITE_NEVER = "never";
+   public static final String OVERWRITE_CHANGED = "changed";
+
+   /**
+    * Where the main logback configuration will be written.
+    *
+    * @parameter expression="${logback.main}" default-value="${basedir}/src/main/resources/logback.xml"
+    */
+   protected File mainOutput;
+
+   /**
+    * Where the test logback configuration will be written.
+    *
+    * @parameter expression="${logback.test}" default-value="${basedir}/src/test/resources/logback-test.xml"
+    */
+   protected File testOutput;
+
+   /**
+    * What to do when an output file already exists. One of <tt>always</tt>
+    * (replace the file), <tt>never</tt> (leave the file alone) or 
+    * <tt>changed</tt> (only replace the file if its content would change).
+    *
+    * @parameter expression="${logback.overwrite}" default-value="always"
+    */
+   protected String overwrite;
+
+   /**
+    * The configuration to generate; one of <tt>console</tt>, <tt>async</tt>
+    * or <tt>rolling</tt>.
+    *
+    * @parameter expression="${logback.preset}" default-value="console"
+    */
+   protected String preset;
+
+   /**
+    * The configuration to generate for the tests; one of <tt>console</tt>,
+    * <tt>async</tt> or <tt>rolling</tt>. Tests usually want their log on the
+    * console, so this does not follow <code>preset</code>.
+    *
+    * @parameter expression="${logback.testPreset}" default-value="console"
+    */
+   protected String testPreset;
+
+   /**
+    * Level for the root logger. Defaults to <tt>debug</tt> for the console
+    * preset and <tt>info</tt> for the async presets.
+    *
+    * @parameter expression="${logback.level}"
+    */
+   protected String rootLevel;
+
+   /**
+    * Per-package logger levels, for example
+    * <code>&lt;org.apache.http&gt;warn&lt;/org.apache.http&gt;</code>.
+    *
+    * @parameter
+    */
+   protected Map<String,String> loggers;
+
+   /**
+    * Number of events the <tt>AsyncAppender</tt> can buffer.
+    *
+    * @parameter expression="${logback.queueSize}" default-value="8192"
+    */
+   protected Integer queueSize;
+
+   /**
+    * Remaining queue capacity below which TRACE, DEBUG and INFO events are
+    * discarded. Zero keeps every event.
+    *
+    * @parameter expression="${logback.discardingThreshold}" default-value="0"
+    */
+   protected Integer discardingThreshold;
+
+   /**
+    * If true events are dropped rather than blocking the caller when the
+    * queue is full.
+    *
+    * @parameter expression="${logback.neverBlock}" default-value="true"
+    */
+   protected Boolean neverBlock;
+
+   /**
+    * Whether the <tt>AsyncAppender</tt> extracts caller data. This is
+    * expensive and is off by default.
+    *
+    * @parameter expression="${logback.callerData}" default-value="false"
+    */
+   protected Boolean callerData;
+
+   /**
+    * The active log file for the rolling preset.
+    *
+    * @parameter expression="${logback.file}" default-value="logs/application.log"
+    */
+   protected String logFile;
+
+   /**
+    * @parameter expression="${logback.maxFileSize}" default-value="100MB"
+    */
+   protected String maxFileSize;
+
+   /**
+    * Number of days of rolled files to keep.
+    *
+    * @parameter expression="${logback.maxHistory}" default-value="30"
+    */
+   protected Integer maxHistory;
+
+   /**
+    * Upper bound on the total size of the rolled files.
+    *
+    * @parameter expression="${logback.totalSizeCap}" default-value="5GB"
+    */
+   protected String totalSizeCap;
 
    public void execute() throws MojoExecutionException, MojoFailureException
    {
-      InputStream is = this.getClass().getClassLoader().getResourceAsStream("template.xml");
-      if (is == null)
+      validate();
+      List<String> template = loadTemplate();
+      write(configure(preset).render(template), mainOutput);
+      write(configure(testPreset).render(template), testOutput);
+   }
+
+   /** Rejects an unknown preset or overwrite policy. */
+   protected void validate() throws MojoFailureException
+   {
+      if (!LogbackConfig.isPreset(preset))
       {
-         throw new MojoFailureException("Unable to find the default logback.xml file.");
+         throw new MojoFailureException("Unknown logback preset " + preset);
       }
-      
-      BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-      List<String> lines = new LinkedList<String>();
-      String line;
-      try
+      if (!LogbackConfig.isPreset(testPreset))
       {
-         line = reader.readLine();
-         while (line != null)
-         {
-            lines.add(line);
-            line = reader.readLine();
-         }
+         throw new MojoFailureException("Unknown logback test preset " + testPreset);
       }
-      catch (IOException e)
+      if (!OVERWRITE_ALWAYS.equals(overwrite) && !OVERWRITE_NEVER.equals(overwrite)
+            && !OVERWRITE_CHANGED.equals(overwrite))
+      {
+         throw new MojoFailureException("Unknown overwrite policy " + overwrite);
+      }
+   }
+
+   /** Returns the configuration for <code>preset</code> with the other settings of this goal. */
+   protected LogbackConfig configure(String preset)
+   {
+      LogbackConfig config = new LogbackConfig();
+      config.preset = preset;
+      config.rootLevel = rootLevel;
+      config.loggers = loggers;
+      if (queueSize != null) config.queueSize = queueSize;
+      if (discardingThreshold != null) config.discardingThreshold = discardingThreshold;
+      if (neverBlock != null) config.neverBlock = neverBlock;
+      if (callerData != null) config.includeCallerData = callerData;
+      if (logFile != null) config.logFile = logFile;
+      if (maxFileSize != null) config.maxFileSize = maxFileSize;
+      if (maxHistory != null) config.maxHistory = maxHistory;
+      if (totalSizeCap != null) config.totalSizeCap = totalSizeCap;
+      return config;
+   }
+
+   protected List<String> loadTemplate() throws MojoFailureException
+   {
+      Telemetry.Span span = Telemetry.get().noticeLoad("logback", TEMPLATE);
+      List<String> lines = BundledResources.lines(TEMPLATE);
+      if (span.isEnabled() && lines != null)
+      {
+         span.bytes(GeneratedFiles.toBytes(lines).length);
+      }
+      span.end();
+      if (lines == null)
+      {
+         throw new MojoFailureException("Unable to find the default logback.xml file.");
+      }
+      return lines;
+   }
+
+   private void write(List<String> lines, File outfile) throws MojoFailureException, MojoExecutionException
+   {
+      Telemetry.Span span = Telemetry.get().generatedFile("logback", outfile.getPath());
+      try
       {
-         throw new MojoExecutionException("Unable to load logback.xml", e);
+         span.decision(writeIfAllowed(lines, outfile));
       }
       finally
       {
-         try
-         {
-            reader.close();
-         }
-         catch (IOException e)
+         if (span.isEnabled())
          {
+            span.bytes(outfile.length());
          }
+         span.end();
       }
-      
-      write(lines, "src/main/resources", "logback.xml");
-      write(lines, "src/test/resources", "logback-test.xml");
    }
 
-   private void write(List<String> lines, String path, String name) throws MojoFailureException, MojoExecutionException
+   /** Writes the file unless the overwrite policy forbids it; returns the decision. */
+   private String writeIfAllowed(List<String> lines, File outfile) throws MojoFailureException, MojoExecutionException
    {
-      File dir = new File(path);
+      if (outfile.exists())
+      {
+         if (OVERWRITE_NEVER.equals(overwrite))
+         {
+            this.getLog().info(outfile.getPath() + " already exists, skipping.");
+            return "kept";
+         }
+         if (OVERWRITE_CHANGED.equals(overwrite) && lines.equals(readLines(outfile)))
+         {
+            this.getLog().info(outfile.getPath() + " is up to date.");
+            return "unchanged";
+         }
+      }
+      File dir = outfile.getAbsoluteFile().getParentFile();
       if (!dir.exists())
       {
-         if (!dir.mkdirs())
+         if (!dir.mkdirs() && !dir.exists())
          {
-            throw new MojoFailureException("Unable to create " + path);
+            throw new MojoFailureException("Unable to create " + dir.getPath());
          }
       }
-      File outfile = new File(dir, name);
       PrintWriter out = null;
       try
       {
@@ -81,12 +263,47 @@ public class WriteLogbackXml extends AbstractMojo
       }
       catch (Exception e)
       {
-         throw new MojoExecutionException("Error writing " + name, e);
+         throw new MojoExecutionException("Error writing " + outfile.getName(), e);
       }
       finally
       {
-         out.flush();
-         out.close();
+         if (out != null)
+         {
+            out.flush();
+            out.close();
+         }
+      }
+      return "written";
+   }
+
+   private List<String> readLines(File file) throws MojoExecutionException
+   {
+      List<String> lines = new LinkedList<String>();
+      BufferedReader reader = null;
+      try
+      {
+         reader = new BufferedReader(new FileReader(file));
+         String line = reader.readLine();
+         while (line != null)
+         {
+            lines.add(line);
+            line = reader.readLine();
+         }
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException("Unable to read " + file.getPath(), e);
+      }
+      finally
+      {
+         if (reader != null) try
+         {
+            reader.close();
+         }
+         catch (IOException e)
+         {
+         }
       }
+      return lines;
    }
 }
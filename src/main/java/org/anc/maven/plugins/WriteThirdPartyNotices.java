@@ -0,0 +1,180 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Writes a THIRD-PARTY notice file containing the license and notice texts
+ * found in the module's runtime dependencies.
+ * <p>
+ * Only the jars already in the local repository are read, so the goal works
+ * offline. The license entries found in each artifact are cached in a
+ * persistent index (see {@link LicenseIndex}) shared by every build that
+ * uses the same <code>indexDirectory</code>. Identical license texts are
+ * written once, followed by the list of artifacts they apply to.
+ *
+ * @goal third-party
+ * @phase generate-resources
+ * @requiresDependencyResolution runtime
+ */
+public class WriteThirdPartyNotices extends AbstractMojo
+{
+   /**
+    * The resolved runtime classpath of the module.
+    *
+    * @parameter expression="${project.runtimeClasspathElements}"
+    * @required
+    * @readonly
+    */
+   protected List<String> classpathElements;
+
+   /**
+    * The local repository, used to derive artifact coordinates from jar paths.
+    *
+    * @parameter expression="${settings.localRepository}"
+    */
+   protected File localRepository;
+
+   /**
+    * Directory holding the license index. The default location is shared by
+    * every project built by the current user.
+    *
+    * @parameter expression="${thirdparty.index}" default-value="${user.home}/.m2/anc-license-index"
+    */
+   protected File indexDirectory;
+
+   /**
+    * Where the notices will be written.
+    *
+    * @parameter expression="${thirdparty.file}" default-value="${project.build.directory}/THIRD-PARTY.txt"
+    */
+   protected File destination;
+
+   public void execute() throws MojoExecutionException
+   {
+      LicenseIndex index = new LicenseIndex(indexDirectory, localRepository);
+      index.setLog(getLog());
+
+      // Sort by coordinate so the output is stable from build to build.
+      Map<String,Map<String,String>> artifacts = new TreeMap<String,Map<String,String>>();
+      for (String element : classpathElements)
+      {
+         File jar = new File(element);
+         if (!jar.isFile())
+         {
+            // The module's own output directory.
+            continue;
+         }
+         try
+         {
+            artifacts.put(index.coordinate(jar), index.lookup(jar));
+         }
+         catch (IOException e)
+         {
+            getLog().warn("Unable to read " + jar.getPath() + " : " + e.getMessage());
+         }
+      }
+
+      // Group the artifacts by license text.
+      Map<String,List<String>> texts = new LinkedHashMap<String,List<String>>();
+      List<String> unknown = new LinkedList<String>();
+      for (Map.Entry<String,Map<String,String>> artifact : artifacts.entrySet())
+      {
+         if (artifact.getValue().isEmpty())
+         {
+            unknown.add(artifact.getKey());
+            continue;
+         }
+         for (Map.Entry<String,String> entry : artifact.getValue().entrySet())
+         {
+            String text = entry.getValue().trim();
+            List<String> sources = texts.get(text);
+            if (sources == null)
+            {
+               sources = new LinkedList<String>();
+               texts.put(text, sources);
+            }
+            sources.add(artifact.getKey() + " (" + entry.getKey() + ")");
+         }
+      }
+
+      write(texts, unknown, artifacts.size());
+   }
+
+   protected void write(Map<String,List<String>> texts, List<String> unknown, int count)
+         throws MojoExecutionException
+   {
+      File dir = destination.getAbsoluteFile().getParentFile();
+      if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+      {
+         throw new MojoExecutionException("Unable to create " + dir.getPath());
+      }
+      PrintWriter out = null;
+      try
+      {
+         out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(destination),
+               LicenseIndex.UTF8));
+         out.println("This product includes the following third-party artifacts.");
+         for (Map.Entry<String,List<String>> entry : texts.entrySet())
+         {
+            out.println();
+            out.println("================================================================================");
+            for (String source : entry.getValue())
+            {
+               out.println(source);
+            }
+            out.println("--------------------------------------------------------------------------------");
+            out.println(entry.getKey());
+         }
+         if (!unknown.isEmpty())
+         {
+            out.println();
+            out.println("================================================================================");
+            out.println("No license or notice file was found in:");
+            for (String coordinate : unknown)
+            {
+               out.println(coordinate);
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException("Error writing " + destination.getPath(), e);
+      }
+      finally
+      {
+         if (out != null)
+         {
+            out.close();
+         }
+      }
+      getLog().info("Wrote notices for " + count + " artifacts to " + destination.getPath());
+   }
+}
@@ -51,16 +51,42 @@ public class WriteVersion extends AbstractMojo implements org.apache.maven.plugi
      * @required
      */
     private String filename;
+
+    /**
+     * Directory where the fingerprint of the last execution is kept.
+     * @parameter default-value="${project.build.directory}/anc-maven-plugin"
+     */
+    private File fingerprintDirectory;
+
+    /**
+     * Files are recorded in the fingerprint relative to this directory.
+     * @parameter default-value="${basedir}"
+     * @readonly
+     */
+    private File basedir;
+
+    /**
+     * Write the file even if it is up to date.
+     * @parameter expression="${anc.force}" default-value="false"
+     */
+    private Boolean force;
     
     public void execute()
         throws MojoExecutionException
     {
    	 sanityCheck();
+        File versionFile = new File( directory, filename );
+        Fingerprint fingerprint = new Fingerprint( fingerprintDirectory, "version", basedir, versionFile )
+              .input( "version", version );
+        if ( !force && fingerprint.isUpToDate() )
+        {
+            getLog().info( versionFile.getPath() + " is up to date." );
+            return;
+        }
    	 if (!directory.exists())
    	 {
    		 directory.mkdirs();
    	 }
-        File versionFile = new File( directory, filename );
 
         FileWriter w = null;
         try
@@ -91,6 +117,19 @@ public class WriteVersion extends AbstractMojo implements org.apache.maven.plugi
                 }
             }
         }
+        saveFingerprint( fingerprint );
+    }
+
+    protected void saveFingerprint( Fingerprint fingerprint )
+    {
+        try
+        {
+            fingerprint.save();
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to save the fingerprint : " + e.getMessage() );
+        }
     }
     
     protected void sanityCheck() throws MojoExecutionException
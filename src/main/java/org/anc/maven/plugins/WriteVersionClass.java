@@ -17,12 +17,13 @@
 package org.anc.maven.plugins;
 
 import java.io.*;
-import java.util.Stack;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
+import org.anc.maven.plugins.telemetry.Telemetry;
+
 /**
  * Writes the version number to a Java class file so it can be access
  * programm\atically from within the software.
@@ -40,7 +41,7 @@ public class WriteVersionClass extends AbstractMojo
     * @parameter alias="package" expression="${package.name}" default-value=${groupId}
     * @required
     */   
-   private String packageName;
+   protected String packageName;
    
    /** 
     * The name to use for the generated class file, without the .java
@@ -49,7 +50,7 @@ public class WriteVersionClass extends AbstractMojo
     * @parameter alias="class" expression="${class.name}" default-value="Version"
     * @required
     */
-   private String className;
+   protected String className;
    
    /**
     * The version number to be written to the class file.
@@ -57,7 +58,7 @@ public class WriteVersionClass extends AbstractMojo
     * @parameter expression="${version}" default-value="${project.version}"
     * @required
     */
-   private String version;
+   protected String version;
    
    /**
     * The source directory for the project
@@ -65,7 +66,29 @@ public class WriteVersionClass extends AbstractMojo
     * @parameter default-value="${project.build.sourceDirectory}"
     * @required
     */
-   private String sourceDirectory;
+   protected String sourceDirectory;
+   
+   /**
+    * Directory where the fingerprint of the last execution is kept.
+    * 
+    * @parameter default-value="${project.build.directory}/anc-maven-plugin"
+    */
+   private File fingerprintDirectory;
+   
+   /**
+    * Files are recorded in the fingerprint relative to this directory.
+    * 
+    * @parameter default-value="${basedir}"
+    * @readonly
+    */
+   private File basedir;
+   
+   /**
+    * Generate the class even if it is up to date.
+    * 
+    * @parameter expression="${anc.force}" default-value="false"
+    */
+   private Boolean force;
    
    /**
     * The string used to declare the version field.  We declare this here since
@@ -93,9 +116,26 @@ public class WriteVersionClass extends AbstractMojo
       }
       
       File packageFile = new File(sourceDirectory + "/" + packageName.replaceAll("\\.", "/"));
+      File classFile = new File(packageFile, className + ".java");
+      Fingerprint fingerprint = new Fingerprint(fingerprintDirectory, "version-class", basedir, classFile)
+            .input("packageName", packageName)
+            .input("className", className)
+            .input("version", version);
+      if (!force && fingerprint.isUpToDate())
+      {
+         Telemetry.Span span = Telemetry.get().generatedFile("version-class", classFile.getPath());
+         if (span.isEnabled())
+         {
+            span.bytes(classFile.length());
+         }
+         span.decision("up-to-date").end();
+         getLog().info(classFile.getPath() + " is up to date.");
+         return;
+      }
+      
       if (!packageFile.exists())
       {
-         if (!packageFile.mkdirs())
+         if (!packageFile.mkdirs() && !packageFile.exists())
          {
             throw new MojoFailureException("Unable to create the package directory " 
                   + packageFile.getPath());
@@ -112,16 +152,31 @@ public class WriteVersionClass extends AbstractMojo
 //         }
 //      }
       
-      File classFile = new File(packageFile, className + ".java");
+      Telemetry.Span span = Telemetry.get().generatedFile("version-class", classFile.getPath());
       if (checkVersionExists(classFile, version))
       {
+         span.decision("unchanged");
          getLog().info("Class for the current version already exists, skipping.");
       }
       else
       {
          writeJava(classFile);
+         span.decision("written");
          getLog().info("Generated " + classFile.getPath());
       }
+      if (span.isEnabled())
+      {
+         span.bytes(classFile.length());
+      }
+      span.end();
+      try
+      {
+         fingerprint.save();
+      }
+      catch (IOException e)
+      {
+         getLog().warn("Unable to save the fingerprint : " + e.getMessage());
+      }
       
 //      File propertiesFile = new File(resourceDirectory, resourceFile);
 //      writeProperties(propertiesFile);
@@ -130,9 +185,36 @@ public class WriteVersionClass extends AbstractMojo
    
    protected void writeJava(File javaFile) throws MojoExecutionException
    {
+      String source = renderJava();
+      Writer writer = null;
+      try
+      {
+         writer = new FileWriter(javaFile);
+         writer.write(source);
+      }
+      catch (IOException e)
+      {
+         throw new MojoExecutionException(e.getMessage());
+      }
+      finally
+      {
+         if (writer != null) try
+         {
+            writer.close();
+         }
+         catch (IOException e)
+         {
+         }
+      }
+   }
+   
+   /** Returns the source code of the version class. */
+   protected String renderJava()
+   {
+      StringWriter buffer = new StringWriter();
+      out = new PrintWriter(buffer);
       try
       {
-         out = new PrintWriter(new FileWriter(javaFile));
          code("package " + packageName + ";");
          line();
          code("/* DO NO EDIT. This file is geneated automatically by Maven. */");
@@ -146,17 +228,12 @@ public class WriteVersionClass extends AbstractMojo
          code("public static String getVersion() { return version; }");
          closeBrace();
       }
-      catch (IOException e)
-      {
-         throw new MojoExecutionException(e.getMessage());
-      }
       finally
       {
-         if (out != null)
-         {
-            out.close();
-         }
+         out.close();
+         out = null;
       }
+      return buffer.toString();
    }
    
    protected boolean checkVersionExists(File javaFile, String current)
@@ -325,28 +402,3 @@ public class WriteVersionClass extends AbstractMojo
       out.println();
    }
 }
-
-class IndentationLevel
-{
-   protected String currentIndent = "";
-   protected Stack<String> stack = new Stack<String>();
-   
-   public void more()
-   {
-      stack.push(currentIndent);
-      currentIndent += "\t";
-   }
-      
-   public void less()
-   {
-      if (stack.isEmpty())
-      {
-         currentIndent = "";
-         return;
-      }
-      currentIndent = stack.pop();
-   }
-   
-   @Override
-   public String toString() { return currentIndent; }
-}
\ No newline at end of file
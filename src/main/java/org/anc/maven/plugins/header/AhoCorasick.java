@@ -0,0 +1,173 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton that finds every occurrence of a set of patterns
+ * in a single pass over a byte buffer.
+ * <p>
+ * Patterns are matched against the UTF-8 bytes of the text and ASCII letters
+ * are matched without regard to case. The automaton is compiled into a full
+ * transition table so matching is one array lookup per input byte. Once
+ * built an automaton is immutable and can be shared between threads.
+ */
+public class AhoCorasick
+{
+   protected static final int ALPHABET = 256;
+
+   protected final String[] patterns;
+
+   /** transitions[state * ALPHABET + byte] is the next state. */
+   protected final int[] transitions;
+
+   /** The patterns that end at each state, including via suffix links. */
+   protected final int[][] outputs;
+
+   public AhoCorasick(List<String> patterns)
+   {
+      this.patterns = patterns.toArray(new String[patterns.size()]);
+      Charset utf8 = Charset.forName("UTF-8");
+
+      // Build the trie.
+      List<int[]> trie = new ArrayList<int[]>();
+      List<List<Integer>> found = new ArrayList<List<Integer>>();
+      trie.add(newState());
+      found.add(new LinkedList<Integer>());
+      for (int p = 0; p < this.patterns.length; ++p)
+      {
+         int state = 0;
+         for (byte b : this.patterns[p].getBytes(utf8))
+         {
+            int c = fold(b & 0xFF);
+            if (trie.get(state)[c] < 0)
+            {
+               trie.get(state)[c] = trie.size();
+               trie.add(newState());
+               found.add(new LinkedList<Integer>());
+            }
+            state = trie.get(state)[c];
+         }
+         found.get(state).add(p);
+      }
+
+      // Breadth first, fill in the failure transitions and merge outputs.
+      int count = trie.size();
+      int[] fail = new int[count];
+      int[] queue = new int[count];
+      int head = 0;
+      int tail = 0;
+      int[] root = trie.get(0);
+      for (int c = 0; c < ALPHABET; ++c)
+      {
+         if (root[c] < 0)
+         {
+            root[c] = 0;
+         }
+         else
+         {
+            fail[root[c]] = 0;
+            queue[tail++] = root[c];
+         }
+      }
+      while (head < tail)
+      {
+         int state = queue[head++];
+         int[] next = trie.get(state);
+         found.get(state).addAll(found.get(fail[state]));
+         for (int c = 0; c < ALPHABET; ++c)
+         {
+            int child = next[c];
+            if (child < 0)
+            {
+               next[c] = trie.get(fail[state])[c];
+            }
+            else
+            {
+               fail[child] = trie.get(fail[state])[c];
+               queue[tail++] = child;
+            }
+         }
+      }
+
+      transitions = new int[count * ALPHABET];
+      outputs = new int[count][];
+      for (int s = 0; s < count; ++s)
+      {
+         System.arraycopy(trie.get(s), 0, transitions, s * ALPHABET, ALPHABET);
+         List<Integer> out = found.get(s);
+         outputs[s] = new int[out.size()];
+         int i = 0;
+         for (Integer p : out)
+         {
+            outputs[s][i++] = p;
+         }
+      }
+   }
+
+   public int size() { return patterns.length; }
+
+   public String getPattern(int index) { return patterns[index]; }
+
+   /**
+    * Scans the bytes between the buffer's position and limit. On return
+    * <code>ends[p]</code> is the buffer index just past the first occurrence
+    * of pattern <code>p</code>, or -1 if the pattern does not occur. The
+    * buffer's position is not changed.
+    *
+    * @return the number of distinct patterns found.
+    */
+   public int match(ByteBuffer buffer, int[] ends)
+   {
+      Arrays.fill(ends, -1);
+      int distinct = 0;
+      int state = 0;
+      int limit = buffer.limit();
+      for (int i = buffer.position(); i < limit; ++i)
+      {
+         state = transitions[state * ALPHABET + fold(buffer.get(i) & 0xFF)];
+         int[] out = outputs[state];
+         for (int j = 0; j < out.length; ++j)
+         {
+            if (ends[out[j]] < 0)
+            {
+               ends[out[j]] = i + 1;
+               ++distinct;
+            }
+         }
+      }
+      return distinct;
+   }
+
+   protected static int[] newState()
+   {
+      int[] state = new int[ALPHABET];
+      Arrays.fill(state, -1);
+      return state;
+   }
+
+   protected static int fold(int c)
+   {
+      return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+   }
+}
@@ -0,0 +1,112 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a per-file task over a list of files, on several threads if asked
+ * to, and returns the results in the order of the files. A task that throws,
+ * or is interrupted, yields the task's failure result for that file, so
+ * every file always has a result.
+ */
+class Batch
+{
+   interface Task<T>
+   {
+      T process(File file);
+
+      /** The result for a file whose task failed. */
+      T failed(File file, String message);
+   }
+
+   /** A task that produces a {@link StampResult}. */
+   abstract static class StampTask implements Task<StampResult>
+   {
+      public StampResult failed(File file, String message)
+      {
+         return new StampResult(file, StampResult.Status.FAILED, message);
+      }
+   }
+
+   private Batch()
+   {
+   }
+
+   public static <T> List<T> run(List<File> files, int threads, final Task<T> task)
+   {
+      List<T> results = new ArrayList<T>(files.size());
+      if (threads <= 1 || files.size() < 2)
+      {
+         for (File file : files)
+         {
+            try
+            {
+               results.add(task.process(file));
+            }
+            catch (RuntimeException e)
+            {
+               results.add(task.failed(file, String.valueOf(e)));
+            }
+         }
+         return results;
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+      try
+      {
+         List<Future<T>> futures = new ArrayList<Future<T>>(files.size());
+         for (final File file : files)
+         {
+            futures.add(executor.submit(new Callable<T>() {
+               public T call()
+               {
+                  return task.process(file);
+               }
+            }));
+         }
+         for (int i = 0; i < futures.size(); ++i)
+         {
+            try
+            {
+               results.add(futures.get(i).get());
+            }
+            catch (ExecutionException e)
+            {
+               results.add(task.failed(files.get(i), String.valueOf(e.getCause())));
+            }
+            catch (InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               results.add(task.failed(files.get(i), "Interrupted"));
+            }
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+      return results;
+   }
+}
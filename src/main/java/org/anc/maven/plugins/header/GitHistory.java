@@ -0,0 +1,391 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The range of years in which each file under a directory was committed,
+ * read from the local git history.
+ * <p>
+ * The whole history is read with a single <tt>git log --name-status -M</tt>
+ * whose output is parsed as it streams, building a map from the path of
+ * each file, relative to the directory, to its first and last commit years.
+ * Renames are followed, so a file that was moved keeps the year it was
+ * first committed under its old path.
+ * The map can be saved with the commit it was built from. When it is loaded
+ * again only the commits made since then are read, provided the saved
+ * commit is still an ancestor of <tt>HEAD</tt>; otherwise (after a rebase,
+ * say) the map is rebuilt from scratch. The paths in the map are relative to
+ * the directory, so the saved map records the directory, relative to the top
+ * of the work tree, and is only used for the same directory.
+ * <p>
+ * Outside a git work tree, or in a repository without commits, the map is
+ * empty and {@link #getHead()} is null, so every file gets the current year.
+ * <p>
+ * Once built the map is only read, so it can be shared between threads.
+ */
+public class GitHistory
+{
+   protected static final Charset UTF8 = Charset.forName("UTF-8");
+   protected static final char COMMIT = '\u0001';
+
+   protected final File directory;
+   protected final Map<String,int[]> years = new HashMap<String,int[]>();
+   protected String head;
+   /** The directory relative to the top of the work tree, as git reports it. */
+   protected String prefix;
+
+   protected GitHistory(File directory)
+   {
+      this.directory = directory.getAbsoluteFile();
+   }
+
+   /**
+    * Returns the history of the files under <code>directory</code>,
+    * starting from the map saved in <code>cache</code> if there is one and
+    * saving the updated map back to it. <code>cache</code> may be null.
+    */
+   public static GitHistory load(File directory, File cache) throws IOException
+   {
+      GitHistory history = new GitHistory(directory);
+      if (!history.hasCommits())
+      {
+         return history;
+      }
+      String current = history.git("rev-parse", "HEAD").trim();
+      history.prefix = history.git("rev-parse", "--show-prefix").trim();
+      if (cache != null && cache.isFile())
+      {
+         history.read(cache);
+      }
+      if (current.equals(history.head))
+      {
+         return history;
+      }
+      if (history.head != null && history.isAncestor(history.head))
+      {
+         history.scan(history.head + "..HEAD");
+      }
+      else
+      {
+         history.years.clear();
+         history.scan("HEAD");
+      }
+      history.head = current;
+      if (cache != null)
+      {
+         history.write(cache);
+      }
+      return history;
+   }
+
+   /**
+    * The commit the map is up to date with, or null if the directory is not
+    * in a git work tree with at least one commit.
+    */
+   public String getHead() { return head; }
+
+   /** The number of files in the map. */
+   public int size() { return years.size(); }
+
+   /**
+    * Returns the first and last commit years of a file under the directory,
+    * or null if the file has never been committed.
+    */
+   public int[] getYears(File file)
+   {
+      String path = file.getAbsolutePath();
+      String root = directory.getPath() + File.separator;
+      if (!path.startsWith(root))
+      {
+         return null;
+      }
+      return years.get(path.substring(root.length()).replace(File.separatorChar, '/'));
+   }
+
+   /**
+    * Reads the log for the given revision range and merges it into the map.
+    * <p>
+    * The log runs from the newest commit to the oldest, so when a rename is
+    * seen the old path is mapped to the file's current path and the older
+    * commits of the old path are counted for the current one. Once the
+    * commit that added a path is seen, older commits of that path belong to
+    * some other file and are no longer redirected.
+    */
+   protected void scan(String range) throws IOException
+   {
+      Process process = start("-c", "core.quotePath=false", "log", "-M",
+            "--name-status", "--relative", "--date=format:%Y", "--format=%x01%ad", range, "--", ".");
+      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF8));
+      Map<String,int[]> found = new HashMap<String,int[]>();
+      Map<String,String> renamed = new HashMap<String,String>();
+      try
+      {
+         int year = 0;
+         String line;
+         while ((line = reader.readLine()) != null)
+         {
+            if (line.length() == 0)
+            {
+               continue;
+            }
+            if (line.charAt(0) == COMMIT)
+            {
+               year = Integer.parseInt(line.substring(1).trim());
+               continue;
+            }
+            String[] fields = line.split("\t");
+            String path = fields[fields.length - 1];
+            String current = renamed.containsKey(path) ? renamed.get(path) : path;
+            add(found, current, year, year);
+            if (fields[0].charAt(0) == 'R' && fields.length == 3)
+            {
+               renamed.put(fields[1], current);
+            }
+            else if (fields[0].charAt(0) == 'A')
+            {
+               renamed.remove(path);
+            }
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+      finish(process, "log");
+
+      // Years saved for a path that has since been renamed belong to the
+      // file's new path.
+      for (Map.Entry<String,String> entry : renamed.entrySet())
+      {
+         int[] saved = years.remove(entry.getKey());
+         if (saved != null)
+         {
+            add(years, entry.getValue(), saved[0], saved[1]);
+         }
+      }
+      for (Map.Entry<String,int[]> entry : found.entrySet())
+      {
+         add(years, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+      }
+   }
+
+   protected static void add(Map<String,int[]> map, String path, int first, int last)
+   {
+      int[] known = map.get(path);
+      if (known == null)
+      {
+         map.put(path, new int[] { first, last });
+      }
+      else
+      {
+         known[0] = Math.min(known[0], first);
+         known[1] = Math.max(known[1], last);
+      }
+   }
+
+   /**
+    * True if the directory is in a git work tree with at least one commit.
+    * False if it is not, or if git cannot be run.
+    */
+   protected boolean hasCommits()
+   {
+      try
+      {
+         ProcessBuilder builder = new ProcessBuilder("git", "rev-parse", "--verify", "--quiet", "HEAD");
+         builder.directory(directory);
+         // git's complaint about a missing repository is not an error here.
+         builder.redirectErrorStream(true);
+         Process process = builder.start();
+         drain(process.getInputStream());
+         return process.waitFor() == 0;
+      }
+      catch (IOException e)
+      {
+         return false;
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         return false;
+      }
+   }
+
+   protected boolean isAncestor(String commit) throws IOException
+   {
+      Process process = start("merge-base", "--is-ancestor", commit, "HEAD");
+      drain(process.getInputStream());
+      try
+      {
+         return process.waitFor() == 0;
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted waiting for git.");
+      }
+   }
+
+   protected String git(String... args) throws IOException
+   {
+      Process process = start(args);
+      String output = drain(process.getInputStream());
+      finish(process, args[0]);
+      return output;
+   }
+
+   protected Process start(String... args) throws IOException
+   {
+      List<String> command = new ArrayList<String>();
+      command.add("git");
+      command.addAll(Arrays.asList(args));
+      ProcessBuilder builder = new ProcessBuilder(command);
+      builder.directory(directory);
+      builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+      return builder.start();
+   }
+
+   protected static void finish(Process process, String command) throws IOException
+   {
+      try
+      {
+         int status = process.waitFor();
+         if (status != 0)
+         {
+            throw new IOException("git " + command + " failed with status " + status);
+         }
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted waiting for git.");
+      }
+   }
+
+   protected static String drain(InputStream in) throws IOException
+   {
+      StringBuilder buffer = new StringBuilder();
+      InputStreamReader reader = new InputStreamReader(in, UTF8);
+      try
+      {
+         char[] chars = new char[1024];
+         int n;
+         while ((n = reader.read(chars)) > 0)
+         {
+            buffer.append(chars, 0, n);
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+      return buffer.toString();
+   }
+
+   /**
+    * Reads a saved map. The first line is the commit and the second is
+    * <tt>dir PREFIX</tt>; each following line is <tt>FIRST LAST PATH</tt>.
+    * A damaged file, or one saved for another directory, is ignored.
+    */
+   protected void read(File cache)
+   {
+      BufferedReader reader = null;
+      try
+      {
+         reader = new BufferedReader(new InputStreamReader(new FileInputStream(cache), UTF8));
+         String commit = reader.readLine();
+         String line = reader.readLine();
+         if (commit == null || line == null || !line.equals("dir " + prefix))
+         {
+            return;
+         }
+         while ((line = reader.readLine()) != null)
+         {
+            int a = line.indexOf(' ');
+            int b = line.indexOf(' ', a + 1);
+            years.put(line.substring(b + 1), new int[] {
+               Integer.parseInt(line.substring(0, a)),
+               Integer.parseInt(line.substring(a + 1, b))
+            });
+         }
+         head = commit;
+      }
+      catch (RuntimeException e)
+      {
+         years.clear();
+      }
+      catch (IOException e)
+      {
+         years.clear();
+      }
+      finally
+      {
+         if (reader != null) try
+         {
+            reader.close();
+         }
+         catch (IOException e)
+         {
+         }
+      }
+   }
+
+   protected void write(File cache) throws IOException
+   {
+      File dir = cache.getAbsoluteFile().getParentFile();
+      if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+      {
+         throw new IOException("Unable to create " + dir.getPath());
+      }
+      File temp = File.createTempFile(cache.getName(), ".tmp", dir);
+      Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF8));
+      try
+      {
+         out.write(head);
+         out.write('\n');
+         out.write("dir " + prefix + "\n");
+         for (Map.Entry<String,int[]> entry : years.entrySet())
+         {
+            int[] range = entry.getValue();
+            out.write(range[0] + " " + range[1] + " " + entry.getKey() + "\n");
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+      Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+   }
+}
@@ -0,0 +1,436 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.anc.maven.plugins.telemetry.Telemetry;
+
+/**
+ * Adds a copyright notice to the top of Java and Groovy source files.
+ * <p>
+ * Everything before the <tt>package</tt> statement is treated as the file's
+ * header and is replaced by the notice. Files without a package statement
+ * are left alone, as are files whose header already is the notice; those
+ * files are never written. The rest of the file, from the package statement
+ * on, is kept byte for byte and the file's own line separator is used for
+ * the notice.
+ * <p>
+ * This class has no Maven dependencies so it can be used from the
+ * <tt>copyright</tt> goal, from {@link Main} in a git hook, or embedded in
+ * other tools. A stamper can be shared between threads once configured, and
+ * {@link #process(List)} will use several threads if asked to.
+ */
+public class HeaderStamper
+{
+   public static final String YEAR = "%YEAR%";
+
+   protected List<String> notice;
+   protected NoticeProvider provider;
+   protected boolean replace = true;
+   protected boolean check = false;
+   protected Charset charset = Charset.defaultCharset();
+   protected int threads = 1;
+   protected Telemetry telemetry = Telemetry.NONE;
+
+   public HeaderStamper(List<String> notice)
+   {
+      this.notice = notice;
+   }
+
+   /**
+    * Determines whether existing copyright notices will be replaced. When
+    * false a file whose header contains the word <tt>Copyright</tt> is kept
+    * as is.
+    */
+   public void setReplace(boolean replace) { this.replace = replace; }
+
+   /** When true files are classified but never written. */
+   public void setCheck(boolean check) { this.check = check; }
+
+   public void setCharset(Charset charset) { this.charset = charset; }
+
+   /** The number of threads used by {@link #process(List)}. */
+   public void setThreads(int threads) { this.threads = threads; }
+
+   /**
+    * Where the classify and rewrite events are recorded; nothing is recorded
+    * by default.
+    */
+   public void setTelemetry(Telemetry telemetry) { this.telemetry = telemetry; }
+
+   public List<String> getNotice() { return notice; }
+
+   /**
+    * Supplies a notice for each file, for notices that differ from file to
+    * file. Files for which the provider returns null get the default notice.
+    */
+   public void setNoticeProvider(NoticeProvider provider) { this.provider = provider; }
+
+   /** Returns the notice to be used for a file. */
+   public List<String> getNotice(File file)
+   {
+      if (provider != null)
+      {
+         List<String> result = provider.notice(file);
+         if (result != null)
+         {
+            return result;
+         }
+      }
+      return notice;
+   }
+
+   /**
+    * Reads the text of a notice, replacing <tt>%YEAR%</tt>, and the per-file
+    * year variables of {@link NoticeTemplate}, with <code>year</code>. The
+    * reader is closed.
+    */
+   public static List<String> loadNotice(Reader reader, int year) throws IOException
+   {
+      return NoticeTemplate.load(reader).render(year);
+   }
+
+   public static int currentYear()
+   {
+      return Calendar.getInstance().get(Calendar.YEAR);
+   }
+
+   /**
+    * Returns <code>root</code> if it is a file, otherwise every file below
+    * <code>root</code> accepted by the filter.
+    */
+   public static List<File> collect(File root, FileFilter filter)
+   {
+      List<File> files = new ArrayList<File>();
+      collect(root, filter, files);
+      return files;
+   }
+
+   protected static void collect(File file, FileFilter filter, List<File> files)
+   {
+      if (file.isFile())
+      {
+         files.add(file);
+         return;
+      }
+      File[] contents = file.listFiles(filter);
+      if (contents == null)
+      {
+         return;
+      }
+      for (File f : contents)
+      {
+         collect(f, filter, files);
+      }
+   }
+
+   /** Processes the files, in parallel if more than one thread was requested. */
+   public List<StampResult> process(List<File> files)
+   {
+      return Batch.run(files, threads, new Batch.StampTask() {
+         public StampResult process(File file)
+         {
+            return HeaderStamper.this.process(file);
+         }
+      });
+   }
+
+   /** Adds the notice to a single file. Errors are reported in the result. */
+   public StampResult process(File file)
+   {
+      Telemetry.Span span = telemetry.classify(file.getPath());
+      String source;
+      try
+      {
+         source = read(file);
+      }
+      catch (CharacterCodingException e)
+      {
+         span.decision(StampResult.Status.FAILED.name()).end();
+         return new StampResult(file, StampResult.Status.FAILED, "Not valid " + charset.name());
+      }
+      catch (IOException e)
+      {
+         span.decision(StampResult.Status.FAILED.name()).end();
+         return new StampResult(file, StampResult.Status.FAILED, e.getMessage());
+      }
+
+      List<String> notice = getNotice(file);
+      int offset = findPackage(source);
+      StampResult.Status status = classify(source, offset, notice);
+      if (span.isEnabled())
+      {
+         span.bytes(file.length());
+      }
+      span.decision(status.name()).end();
+      if (status == StampResult.Status.STAMPED && !check)
+      {
+         span = telemetry.rewrite(file.getPath());
+         try
+         {
+            span.bytes(write(file, render(source, offset, notice)));
+         }
+         catch (IOException e)
+         {
+            return new StampResult(file, StampResult.Status.FAILED, e.getMessage());
+         }
+         finally
+         {
+            span.end();
+         }
+      }
+      return new StampResult(file, status);
+   }
+
+   /**
+    * Returns the source with the notice in place of its header, or null if
+    * the source does not need to be changed.
+    */
+   public String stamp(String source)
+   {
+      int offset = findPackage(source);
+      if (classify(source, offset) != StampResult.Status.STAMPED)
+      {
+         return null;
+      }
+      return render(source, offset);
+   }
+
+   /** Classifies the source without changing it. */
+   public StampResult.Status classify(String source)
+   {
+      return classify(source, findPackage(source));
+   }
+
+   protected StampResult.Status classify(String source, int offset)
+   {
+      return classify(source, offset, notice);
+   }
+
+   protected StampResult.Status classify(String source, int offset, List<String> notice)
+   {
+      if (offset < 0)
+      {
+         return StampResult.Status.SKIPPED;
+      }
+      // A blank line between the notice and the package statement is
+      // ignored on both sides.
+      List<String> header = withoutTrailingBlanks(lines(source.substring(0, offset)));
+      if (header.equals(withoutTrailingBlanks(notice)))
+      {
+         return StampResult.Status.CURRENT;
+      }
+      if (!replace && source.substring(0, offset).contains("Copyright"))
+      {
+         return StampResult.Status.KEPT;
+      }
+      return StampResult.Status.STAMPED;
+   }
+
+   protected String render(String source, int offset)
+   {
+      return render(source, offset, notice);
+   }
+
+   protected String render(String source, int offset, List<String> notice)
+   {
+      String separator = separator(source);
+      StringBuilder buffer = new StringBuilder(source.length() + 1024);
+      for (String line : notice)
+      {
+         buffer.append(line).append(separator);
+      }
+      buffer.append(source, offset, source.length());
+      return buffer.toString();
+   }
+
+   /**
+    * Returns the index of the start of the first line that begins with
+    * <tt>package</tt>, or -1 if there is no such line.
+    */
+   public static int findPackage(String source)
+   {
+      int start = 0;
+      while (start < source.length())
+      {
+         if (source.startsWith("package", start))
+         {
+            return start;
+         }
+         int end = source.indexOf('\n', start);
+         if (end < 0)
+         {
+            break;
+         }
+         start = end + 1;
+      }
+      return -1;
+   }
+
+   /** Returns the line separator used by the source. */
+   public static String separator(String source)
+   {
+      int newline = source.indexOf('\n');
+      if (newline < 0)
+      {
+         return System.getProperty("line.separator");
+      }
+      if (newline > 0 && source.charAt(newline - 1) == '\r')
+      {
+         return "\r\n";
+      }
+      return "\n";
+   }
+
+   /** Returns a view of the lines without any trailing blank lines. */
+   protected static List<String> withoutTrailingBlanks(List<String> lines)
+   {
+      int end = lines.size();
+      while (end > 0 && lines.get(end - 1).trim().length() == 0)
+      {
+         --end;
+      }
+      return lines.subList(0, end);
+   }
+
+   protected static List<String> lines(String text)
+   {
+      List<String> lines = new ArrayList<String>();
+      int start = 0;
+      while (start < text.length())
+      {
+         int end = text.indexOf('\n', start);
+         if (end < 0)
+         {
+            end = text.length();
+         }
+         int stop = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+         lines.add(text.substring(start, stop));
+         start = end + 1;
+      }
+      return lines;
+   }
+
+   protected String read(File file) throws IOException
+   {
+      return decode(Files.readAllBytes(file.toPath()));
+   }
+
+   /** Decodes source bytes, failing on anything not valid in the charset. */
+   protected String decode(byte[] bytes) throws CharacterCodingException
+   {
+      return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .decode(ByteBuffer.wrap(bytes))
+            .toString();
+   }
+
+   /**
+    * Writes the source and returns the number of bytes written. The source
+    * is written to a temporary file that then replaces the original, so
+    * anything reading the file, including another stamper, sees either the
+    * old or the new content and never a partly written file. The move is
+    * atomic: a plain replacing move deletes the original first, which fails if
+    * another stamper replaces it in between.
+    */
+   protected long write(File file, String source) throws IOException
+   {
+      if (!file.canWrite())
+      {
+         throw new IOException("File is read only");
+      }
+      byte[] bytes = source.getBytes(charset);
+      File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+      boolean replaced = false;
+      try
+      {
+         OutputStream out = new FileOutputStream(temp);
+         try
+         {
+            out.write(bytes);
+         }
+         finally
+         {
+            out.close();
+         }
+         copyAttributes(file, temp);
+         Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+         replaced = true;
+      }
+      finally
+      {
+         if (!replaced)
+         {
+            temp.delete();
+         }
+      }
+      return bytes.length;
+   }
+
+   /**
+    * Gives the replacement the permissions, and where allowed the owner and
+    * group, of the original so replacing the file does not change them.
+    */
+   protected static void copyAttributes(File original, File replacement) throws IOException
+   {
+      Path from = original.toPath();
+      Path to = replacement.toPath();
+      PosixFileAttributeView view = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+      if (view == null)
+      {
+         replacement.setExecutable(original.canExecute());
+         return;
+      }
+      PosixFileAttributes attributes = Files.readAttributes(from, PosixFileAttributes.class);
+      view.setPermissions(attributes.permissions());
+      try
+      {
+         view.setGroup(attributes.group());
+         view.setOwner(attributes.owner());
+      }
+      catch (IOException e)
+      {
+         // Only the owner of the file or root may change these.
+      }
+   }
+
+   /** Supplies the notice for an individual file. */
+   public interface NoticeProvider
+   {
+      /** Returns the notice for the file, or null to use the default. */
+      List<String> notice(File file);
+   }
+}
@@ -0,0 +1,211 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scans the leading region of each file for a set of license and copyright
+ * holder patterns.
+ * <p>
+ * All patterns are matched in one pass with an {@link AhoCorasick}
+ * automaton. Only the first <code>headerBytes</code> of a file are read;
+ * regions of at least {@link #MAP_THRESHOLD} bytes are memory mapped, smaller
+ * ones are read into a per-thread buffer since mapping a few kilobytes costs
+ * more than copying them. Files are divided between the worker threads as
+ * they become free; a file that cannot be scanned gets an entry describing
+ * the error.
+ */
+public class InventoryScanner
+{
+   public static final int MAP_THRESHOLD = 64 * 1024;
+
+   protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+   protected final AhoCorasick automaton;
+   protected final int copyright;
+   protected final boolean implicitCopyright;
+   protected int headerBytes = 8192;
+   protected int threads = 1;
+
+   public InventoryScanner(List<String> patterns)
+   {
+      List<String> all = new ArrayList<String>(patterns);
+      int index = indexOfIgnoreCase(all, "Copyright");
+      implicitCopyright = index < 0;
+      if (implicitCopyright)
+      {
+         // Always look for the notice itself so its line can be reported.
+         all.add("Copyright");
+         index = all.size() - 1;
+      }
+      automaton = new AhoCorasick(all);
+      copyright = index;
+   }
+
+   /** The number of bytes at the start of each file that are scanned. */
+   public void setHeaderBytes(int headerBytes) { this.headerBytes = headerBytes; }
+
+   public void setThreads(int threads) { this.threads = threads; }
+
+   public List<Entry> scan(List<File> files)
+   {
+      final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+         @Override
+         protected ByteBuffer initialValue()
+         {
+            return ByteBuffer.allocateDirect(Math.min(headerBytes, MAP_THRESHOLD));
+         }
+      };
+      final ThreadLocal<int[]> ends = new ThreadLocal<int[]>() {
+         @Override
+         protected int[] initialValue()
+         {
+            return new int[automaton.size()];
+         }
+      };
+      return Batch.run(files, threads, new Batch.Task<Entry>() {
+         public Entry process(File file)
+         {
+            return scan(file, buffers.get(), ends.get());
+         }
+
+         public Entry failed(File file, String message)
+         {
+            return new Entry(file, Collections.<String>emptyList(), null, message);
+         }
+      });
+   }
+
+   protected Entry scan(File file, ByteBuffer buffer, int[] ends)
+   {
+      FileInputStream stream = null;
+      try
+      {
+         stream = new FileInputStream(file);
+         FileChannel channel = stream.getChannel();
+         int length = (int) Math.min(channel.size(), headerBytes);
+         ByteBuffer region;
+         if (length >= MAP_THRESHOLD)
+         {
+            region = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+         }
+         else
+         {
+            buffer.clear();
+            buffer.limit(length);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+            {
+            }
+            buffer.flip();
+            region = buffer;
+         }
+         if (automaton.match(region, ends) == 0)
+         {
+            return new Entry(file, Collections.<String>emptyList(), null, null);
+         }
+         List<String> matches = new ArrayList<String>();
+         for (int p = 0; p < ends.length; ++p)
+         {
+            if (ends[p] >= 0 && !(p == copyright && implicitCopyright))
+            {
+               matches.add(automaton.getPattern(p));
+            }
+         }
+         String line = ends[copyright] < 0 ? null : line(region, ends[copyright]);
+         return new Entry(file, matches, line, null);
+      }
+      catch (IOException e)
+      {
+         return new Entry(file, Collections.<String>emptyList(), null, e.getMessage());
+      }
+      finally
+      {
+         if (stream != null) try
+         {
+            stream.close();
+         }
+         catch (IOException e)
+         {
+         }
+      }
+   }
+
+   /** Returns the rest of the line following the given index. */
+   protected static String line(ByteBuffer region, int start)
+   {
+      int end = start;
+      while (end < region.limit() && region.get(end) != '\n' && region.get(end) != '\r')
+      {
+         ++end;
+      }
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; ++i)
+      {
+         bytes[i] = region.get(start + i);
+      }
+      return new String(bytes, UTF8).trim();
+   }
+
+   protected static int indexOfIgnoreCase(List<String> list, String value)
+   {
+      for (int i = 0; i < list.size(); ++i)
+      {
+         if (list.get(i).equalsIgnoreCase(value))
+         {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /** The patterns found in one file. */
+   public static class Entry
+   {
+      protected final File file;
+      protected final List<String> matches;
+      protected final String copyright;
+      protected final String error;
+
+      public Entry(File file, List<String> matches, String copyright, String error)
+      {
+         this.file = file;
+         this.matches = matches;
+         this.copyright = copyright;
+         this.error = error;
+      }
+
+      public File getFile() { return file; }
+
+      /** The patterns found, in the order they were configured. */
+      public List<String> getMatches() { return matches; }
+
+      /** The text following the first "Copyright" in the file, or null. */
+      public String getCopyright() { return copyright; }
+
+      /** Why the file could not be read, or null. */
+      public String getError() { return error; }
+   }
+}
@@ -0,0 +1,214 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line entry point for adding or checking copyright notices without
+ * starting Maven, e.g. from a git pre-commit hook:
+ * <pre>
+ * git diff --cached --name-only --diff-filter=ACM |
+ *     java -cp anc-maven-plugin.jar org.anc.maven.plugins.header.Main --check -
+ * </pre>
+ * Only the JDK, the classes in this package and the no-op
+ * {@link org.anc.maven.plugins.telemetry.Telemetry#NONE} are loaded; Java
+ * Flight Recorder is never touched. Startup can be
+ * reduced further with an AppCDS archive (JDK 13+):
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=header.jsa -cp anc-maven-plugin.jar org.anc.maven.plugins.header.Main --check src
+ * java -XX:SharedArchiveFile=header.jsa -cp anc-maven-plugin.jar org.anc.maven.plugins.header.Main --check -
+ * </pre>
+ * or by building a native executable with <tt>mvn -Pnative package</tt>,
+ * which produces <tt>target/anc-header</tt>.
+ * <p>
+ * Exits with 0 on success, 1 if <tt>--check</tt> found files without the
+ * notice, and 2 on errors.
+ */
+public class Main
+{
+   public static final String USAGE =
+         "Usage: anc-header [--check] [--keep] [--notice FILE] [--year YEAR]\n" +
+         "                  [--encoding NAME] [--threads N] [--quiet] [-] PATH...\n" +
+         "\n" +
+         "  --check     report files without the notice instead of changing them\n" +
+         "  --keep      keep existing copyright notices\n" +
+         "  --notice    file containing the notice, default is the bundled COPYRIGHT\n" +
+         "  --year      value for %YEAR% in the notice, default is the current year\n" +
+         "  --encoding  source file encoding, default is the platform encoding\n" +
+         "  --threads   number of files processed at once, default 1\n" +
+         "  --quiet     only report problems\n" +
+         "  -           read paths from standard input, one per line";
+
+   public static void main(String[] args)
+   {
+      System.exit(run(args));
+   }
+
+   public static int run(String[] args)
+   {
+      boolean check = false;
+      boolean replace = true;
+      boolean quiet = false;
+      File noticeFile = null;
+      int year = -1;
+      int threads = 1;
+      Charset charset = Charset.defaultCharset();
+      List<String> paths = new ArrayList<String>();
+      try
+      {
+         for (int i = 0; i < args.length; ++i)
+         {
+            String arg = args[i];
+            if ("--check".equals(arg)) check = true;
+            else if ("--keep".equals(arg)) replace = false;
+            else if ("--quiet".equals(arg)) quiet = true;
+            else if ("--notice".equals(arg)) noticeFile = new File(args[++i]);
+            else if ("--year".equals(arg)) year = Integer.parseInt(args[++i]);
+            else if ("--threads".equals(arg)) threads = Integer.parseInt(args[++i]);
+            else if ("--encoding".equals(arg)) charset = Charset.forName(args[++i]);
+            else if ("--help".equals(arg) || "-h".equals(arg))
+            {
+               System.out.println(USAGE);
+               return 0;
+            }
+            else if ("-".equals(arg)) readPaths(paths);
+            else if (arg.startsWith("--"))
+            {
+               System.err.println("Unknown option " + arg);
+               System.err.println(USAGE);
+               return 2;
+            }
+            else paths.add(arg);
+         }
+      }
+      catch (ArrayIndexOutOfBoundsException e)
+      {
+         System.err.println(USAGE);
+         return 2;
+      }
+      catch (IllegalArgumentException e)
+      {
+         System.err.println(e.getMessage());
+         return 2;
+      }
+      catch (IOException e)
+      {
+         System.err.println("Unable to read paths : " + e.getMessage());
+         return 2;
+      }
+
+      List<String> notice;
+      try
+      {
+         notice = loadNotice(noticeFile, year < 0 ? HeaderStamper.currentYear() : year);
+      }
+      catch (IOException e)
+      {
+         System.err.println("Unable to load the notice : " + e.getMessage());
+         return 2;
+      }
+
+      List<File> files = new ArrayList<File>();
+      SourceFilter filter = new SourceFilter();
+      for (String path : paths)
+      {
+         File file = new File(path);
+         if (file.isDirectory())
+         {
+            files.addAll(HeaderStamper.collect(file, filter));
+         }
+         else if (file.isFile() && SourceFilter.isSource(file.getName()))
+         {
+            files.add(file);
+         }
+      }
+
+      HeaderStamper stamper = new HeaderStamper(notice);
+      stamper.setCheck(check);
+      stamper.setReplace(replace);
+      stamper.setCharset(charset);
+      stamper.setThreads(threads);
+
+      int status = 0;
+      for (StampResult result : stamper.process(files))
+      {
+         switch (result.getStatus())
+         {
+            case STAMPED:
+               if (check)
+               {
+                  System.out.println("Missing notice : " + result.getFile().getPath());
+                  status = Math.max(status, 1);
+               }
+               else if (!quiet)
+               {
+                  System.out.println("Added notice : " + result.getFile().getPath());
+               }
+               break;
+            case FAILED:
+               System.err.println(result);
+               status = 2;
+               break;
+            default:
+               break;
+         }
+      }
+      return status;
+   }
+
+   protected static void readPaths(List<String> paths) throws IOException
+   {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+      String line = reader.readLine();
+      while (line != null)
+      {
+         line = line.trim();
+         if (line.length() > 0)
+         {
+            paths.add(line);
+         }
+         line = reader.readLine();
+      }
+   }
+
+   protected static List<String> loadNotice(File file, int year) throws IOException
+   {
+      InputStream stream;
+      if (file != null)
+      {
+         stream = new FileInputStream(file);
+      }
+      else
+      {
+         stream = Main.class.getClassLoader().getResourceAsStream("COPYRIGHT");
+         if (stream == null)
+         {
+            throw new IOException("The COPYRIGHT resource is missing.");
+         }
+      }
+      return HeaderStamper.loadNotice(new InputStreamReader(stream, "UTF-8"), year);
+   }
+}
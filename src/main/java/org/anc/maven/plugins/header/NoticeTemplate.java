@@ -0,0 +1,201 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A copyright notice split once into literal text and variables so it can
+ * be rendered for each file without searching the text again.
+ * <p>
+ * The variables are <tt>%YEAR%</tt> (the current year),
+ * <tt>%FIRST_YEAR%</tt> and <tt>%LAST_YEAR%</tt> (the years of the first and
+ * last commits that touched the file) and <tt>%YEARS%</tt>, which is
+ * <tt>FIRST-LAST</tt>, or a single year if they are the same. Instances are
+ * immutable and can be shared between threads.
+ */
+public class NoticeTemplate
+{
+   public static final int YEAR = 0;
+   public static final int FIRST_YEAR = 1;
+   public static final int LAST_YEAR = 2;
+   public static final int YEARS = 3;
+
+   protected static final String[] NAMES = { "%YEAR%", "%FIRST_YEAR%", "%LAST_YEAR%", "%YEARS%" };
+
+   /**
+    * One entry per line; each line alternates literal text (a String) and
+    * variables (an Integer index into NAMES).
+    */
+   protected final Object[][] lines;
+   protected final boolean perFile;
+
+   public NoticeTemplate(List<String> text)
+   {
+      lines = new Object[text.size()][];
+      boolean history = false;
+      int n = 0;
+      for (String line : text)
+      {
+         List<Object> tokens = new ArrayList<Object>();
+         int start = 0;
+         while (true)
+         {
+            int found = -1;
+            int variable = -1;
+            for (int v = 0; v < NAMES.length; ++v)
+            {
+               int index = line.indexOf(NAMES[v], start);
+               if (index >= 0 && (found < 0 || index < found))
+               {
+                  found = index;
+                  variable = v;
+               }
+            }
+            if (found < 0)
+            {
+               break;
+            }
+            if (found > start)
+            {
+               tokens.add(line.substring(start, found));
+            }
+            tokens.add(Integer.valueOf(variable));
+            history |= variable != YEAR;
+            start = found + NAMES[variable].length();
+         }
+         if (start < line.length() || tokens.isEmpty())
+         {
+            tokens.add(line.substring(start));
+         }
+         lines[n++] = tokens.toArray();
+      }
+      perFile = history;
+   }
+
+   /** Reads a template; the reader is closed. */
+   public static NoticeTemplate load(Reader reader) throws IOException
+   {
+      return new NoticeTemplate(read(reader));
+   }
+
+   /** Reads the lines of a template; the reader is closed. */
+   public static List<String> read(Reader reader) throws IOException
+   {
+      List<String> text = new ArrayList<String>();
+      BufferedReader breader = new BufferedReader(reader);
+      try
+      {
+         String line = breader.readLine();
+         while (line != null)
+         {
+            text.add(line);
+            line = breader.readLine();
+         }
+      }
+      finally
+      {
+         breader.close();
+      }
+      return text;
+   }
+
+   /** True if the template uses the per-file year variables. */
+   public boolean isPerFile()
+   {
+      return perFile;
+   }
+
+   /** Renders the notice using <code>year</code> for every variable. */
+   public List<String> render(int year)
+   {
+      return render(year, year, year);
+   }
+
+   public List<String> render(int year, int first, int last)
+   {
+      String[] values = {
+         Integer.toString(year),
+         Integer.toString(first),
+         Integer.toString(last),
+         first == last ? Integer.toString(first) : first + "-" + last
+      };
+      List<String> result = new ArrayList<String>(lines.length);
+      StringBuilder buffer = new StringBuilder();
+      for (Object[] tokens : lines)
+      {
+         if (tokens.length == 1 && tokens[0] instanceof String)
+         {
+            result.add((String) tokens[0]);
+            continue;
+         }
+         buffer.setLength(0);
+         for (Object token : tokens)
+         {
+            if (token instanceof String)
+            {
+               buffer.append((String) token);
+            }
+            else
+            {
+               buffer.append(values[(Integer) token]);
+            }
+         }
+         result.add(buffer.toString());
+      }
+      return result;
+   }
+
+   /**
+    * Returns a provider that renders the notice for each file from the years
+    * recorded in <code>history</code>. Files that have never been committed
+    * are given <code>year</code>. Files sharing a range of years share the
+    * rendered notice, so most files cost a single map lookup.
+    */
+   public HeaderStamper.NoticeProvider provider(final GitHistory history, final int year)
+   {
+      final ConcurrentMap<Long,List<String>> rendered = new ConcurrentHashMap<Long,List<String>>();
+      return new HeaderStamper.NoticeProvider() {
+         public List<String> notice(File file)
+         {
+            int[] range = history.getYears(file);
+            int first = range == null ? year : range[0];
+            int last = range == null ? year : range[1];
+            Long key = Long.valueOf(((long) first << 32) | last);
+            List<String> result = rendered.get(key);
+            if (result == null)
+            {
+               result = Collections.unmodifiableList(render(year, first, last));
+               List<String> previous = rendered.putIfAbsent(key, result);
+               if (previous != null)
+               {
+                  result = previous;
+               }
+            }
+            return result;
+         }
+      };
+   }
+}
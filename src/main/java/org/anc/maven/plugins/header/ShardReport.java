@@ -0,0 +1,229 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The results of processing one shard of a source tree, written so the
+ * reports of all shards can be merged into a single verdict.
+ * <p>
+ * A file belongs to shard <code>CRC32(path) mod count</code>, where
+ * <code>path</code> is its '/' separated path relative to the root of the
+ * tree. The assignment therefore depends only on the path, not on the
+ * machine, the order files are listed in or the location of the checkout,
+ * so every file belongs to exactly one shard wherever the shards run.
+ * <p>
+ * A report is a text file. The first line is <tt># shard INDEX of COUNT
+ * MODE</tt>; each following line is <tt>STATUS&lt;tab&gt;PATH</tt>, with a
+ * third field for a failure message, sorted by path.
+ */
+public class ShardReport
+{
+   protected static final Charset UTF8 = Charset.forName("UTF-8");
+   protected static final String HEADER = "# shard ";
+
+   protected int shard;
+   protected int count;
+   protected String mode;
+   protected List<String[]> entries = new ArrayList<String[]>();
+
+   public ShardReport(int shard, int count, String mode)
+   {
+      this.shard = shard;
+      this.count = count;
+      this.mode = mode;
+   }
+
+   /** The name of the report for a shard, <tt>shard-INDEX-of-COUNT.txt</tt>. */
+   public static String fileName(int shard, int count)
+   {
+      return "shard-" + shard + "-of-" + count + ".txt";
+   }
+
+   /** Returns the shard a relative path belongs to. */
+   public static int shardOf(String path, int count)
+   {
+      CRC32 crc = new CRC32();
+      crc.update(path.getBytes(UTF8));
+      return (int) (crc.getValue() % count);
+   }
+
+   /** Returns the '/' separated path of <code>file</code> relative to root. */
+   public static String relativePath(File root, File file)
+   {
+      String base = root.getAbsolutePath();
+      String path = file.getAbsolutePath();
+      if (path.equals(base))
+      {
+         path = file.getName();
+      }
+      else if (path.startsWith(base + File.separator))
+      {
+         path = path.substring(base.length() + 1);
+      }
+      return path.replace(File.separatorChar, '/');
+   }
+
+   /** Returns the files under root that belong to the given shard. */
+   public static List<File> select(File root, List<File> files, int shard, int count)
+   {
+      List<File> result = new ArrayList<File>(files.size() / count + 1);
+      for (File file : files)
+      {
+         if (shardOf(relativePath(root, file), count) == shard)
+         {
+            result.add(file);
+         }
+      }
+      return result;
+   }
+
+   public int getShard() { return shard; }
+
+   public int getCount() { return count; }
+
+   /** What the shard was doing, for example <tt>check</tt> or <tt>stamp</tt>. */
+   public String getMode() { return mode; }
+
+   /** One {status, path, message} array per file; message may be null. */
+   public List<String[]> getEntries() { return entries; }
+
+   public void add(String status, String path, String message)
+   {
+      entries.add(new String[] { status, path, message });
+   }
+
+   /** Adds the results, with paths made relative to root. */
+   public void addAll(File root, List<StampResult> results)
+   {
+      for (StampResult result : results)
+      {
+         add(result.getStatus().name(), relativePath(root, result.getFile()), result.getMessage());
+      }
+   }
+
+   /** Returns the number of entries with the given status. */
+   public int count(String status)
+   {
+      int n = 0;
+      for (String[] entry : entries)
+      {
+         if (entry[0].equals(status))
+         {
+            ++n;
+         }
+      }
+      return n;
+   }
+
+   /**
+    * Writes the report, sorted by path. The report is written to a
+    * temporary file first so a reader never sees a partial report.
+    */
+   public void write(File file) throws IOException
+   {
+      Collections.sort(entries, new Comparator<String[]>() {
+         public int compare(String[] a, String[] b)
+         {
+            return a[1].compareTo(b[1]);
+         }
+      });
+      File dir = file.getAbsoluteFile().getParentFile();
+      if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+      {
+         throw new IOException("Unable to create " + dir.getPath());
+      }
+      File temp = File.createTempFile(file.getName(), ".tmp", dir);
+      PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF8));
+      try
+      {
+         out.print(HEADER + shard + " of " + count + " " + mode + "\n");
+         for (String[] entry : entries)
+         {
+            out.print(entry[0] + "\t" + entry[1]);
+            if (entry[2] != null)
+            {
+               out.print("\t" + entry[2].replace('\t', ' ').replace('\n', ' '));
+            }
+            out.print('\n');
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+      if (out.checkError())
+      {
+         temp.delete();
+         throw new IOException("Error writing " + file.getPath());
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+   }
+
+   public static ShardReport read(File file) throws IOException
+   {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+      try
+      {
+         String line = reader.readLine();
+         String[] header = line == null || !line.startsWith(HEADER) ? null : line.split(" ");
+         if (header == null || header.length != 6 || !header[3].equals("of"))
+         {
+            throw new IOException("Not a shard report : " + file.getPath());
+         }
+         ShardReport report;
+         try
+         {
+            report = new ShardReport(Integer.parseInt(header[2]), Integer.parseInt(header[4]), header[5]);
+         }
+         catch (NumberFormatException e)
+         {
+            throw new IOException("Not a shard report : " + file.getPath());
+         }
+         while ((line = reader.readLine()) != null)
+         {
+            String[] fields = line.split("\t", 3);
+            if (fields.length < 2)
+            {
+               throw new IOException("Malformed line in " + file.getPath() + " : " + line);
+            }
+            report.add(fields[0], fields[1], fields.length > 2 ? fields[2] : null);
+         }
+         return report;
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+}
@@ -0,0 +1,40 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.File;
+import java.io.FileFilter;
+
+/**
+ * Accepts directories and Java or Groovy source files.
+ */
+public class SourceFilter implements FileFilter
+{
+   public boolean accept(File file)
+   {
+      if (file.isDirectory())
+      {
+         return true;
+      }
+      return isSource(file.getName());
+   }
+
+   public static boolean isSource(String filename)
+   {
+      return filename.endsWith(".java") || filename.endsWith(".groovy");
+   }
+}
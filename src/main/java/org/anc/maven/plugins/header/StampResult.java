@@ -0,0 +1,84 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.File;
+
+/**
+ * The outcome of processing one file, or one archive entry, with a
+ * {@link HeaderStamper}.
+ */
+public class StampResult
+{
+   public enum Status
+   {
+      /** The notice was added or replaced (or would be, when checking). */
+      STAMPED,
+      /** The file already starts with the notice. */
+      CURRENT,
+      /** The file has a different copyright notice and replace is off. */
+      KEPT,
+      /** The file has no package statement and is left alone. */
+      SKIPPED,
+      /** The file could not be read or written. */
+      FAILED
+   }
+
+   protected final File file;
+   protected final String path;
+   protected final Status status;
+   protected final String message;
+
+   public StampResult(File file, Status status)
+   {
+      this(file, status, null);
+   }
+
+   public StampResult(File file, Status status, String message)
+   {
+      this(file, file.getPath(), status, message);
+   }
+
+   /** A result for an archive entry; <code>file</code> is the archive. */
+   public StampResult(File file, String path, Status status, String message)
+   {
+      this.file = file;
+      this.path = path;
+      this.status = status;
+      this.message = message;
+   }
+
+   public File getFile() { return file; }
+
+   /** The file path, or the entry name for an archive entry. */
+   public String getPath() { return path; }
+
+   public Status getStatus() { return status; }
+
+   /** A description of the failure, or null. */
+   public String getMessage() { return message; }
+
+   @Override
+   public String toString()
+   {
+      if (message == null)
+      {
+         return status + " " + path;
+      }
+      return status + " " + path + " : " + message;
+   }
+}
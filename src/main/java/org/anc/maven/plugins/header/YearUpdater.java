@@ -0,0 +1,338 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.anc.maven.plugins.telemetry.Telemetry;
+
+/**
+ * Brings the year in an existing copyright notice up to date without
+ * reading or rewriting the rest of the file.
+ * <p>
+ * Only the first <code>headerBytes</code> of a file are read, and only the
+ * part before the <tt>package</tt> statement is searched. Files without a
+ * package statement are skipped, so a year in code is never changed. A range such as
+ * <tt>2009-2025</tt> becomes <tt>2009-2026</tt>; the four digits are patched
+ * in place with a positioned write, so the file is neither truncated nor
+ * copied. A single year such as <tt>2025</tt> becomes <tt>2025-2026</tt>;
+ * since that changes the length of the file the new header is written to a
+ * temporary file, the remainder of the original is appended with a channel
+ * transfer, and the temporary file replaces the original with the
+ * original's permissions. Files are only opened for writing when they need
+ * to change, so read-only files that are up to date are not an error.
+ * <p>
+ * The header is examined as ISO-8859-1 so character and byte offsets are the
+ * same; this is correct for any ASCII compatible encoding, including UTF-8.
+ */
+public class YearUpdater
+{
+   protected static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+   protected static final Pattern NOTICE = Pattern.compile(
+         "copyright\\s+(?:(?:\\(c\\)|\u00c2?\u00a9)\\s*)?(\\d{4})(?:(\\s*-\\s*)(\\d{4}))?",
+         Pattern.CASE_INSENSITIVE);
+
+   protected int year;
+   protected String holder;
+   protected int headerBytes = 8192;
+   protected boolean check = false;
+   protected int threads = 1;
+   protected Telemetry telemetry = Telemetry.NONE;
+
+   public YearUpdater(int year)
+   {
+      this.year = year;
+   }
+
+   /**
+    * When set, only a copyright line that names this holder is updated;
+    * notices belonging to others are never touched.
+    */
+   public void setHolder(String holder) { this.holder = holder; }
+
+   public void setHeaderBytes(int headerBytes) { this.headerBytes = headerBytes; }
+
+   /** When true files are classified but never written. */
+   public void setCheck(boolean check) { this.check = check; }
+
+   public void setThreads(int threads) { this.threads = threads; }
+
+   /** Where the classify events are recorded; nothing is recorded by default. */
+   public void setTelemetry(Telemetry telemetry) { this.telemetry = telemetry; }
+
+   public List<StampResult> process(List<File> files)
+   {
+      return Batch.run(files, threads, new Batch.StampTask() {
+         public StampResult process(File file)
+         {
+            return YearUpdater.this.process(file);
+         }
+      });
+   }
+
+   /**
+    * Updates the year in one file. The result is STAMPED if the year was
+    * (or in check mode would be) changed, CURRENT if it is already up to
+    * date and SKIPPED if no copyright year was found.
+    */
+   public StampResult process(File file)
+   {
+      Telemetry.Span span = telemetry.classify(file.getPath());
+      if (span.isEnabled())
+      {
+         span.bytes(file.length());
+      }
+      StampResult result = update(file);
+      span.decision(result.getStatus().name()).end();
+      return result;
+   }
+
+   protected StampResult update(File file)
+   {
+      RandomAccessFile raf = null;
+      File replacement = null;
+      long patch = -1;
+      StampResult result;
+      try
+      {
+         // Opened for reading only; most files need no change.
+         raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel();
+         ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), headerBytes));
+         while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0)
+         {
+         }
+         buffer.flip();
+         String header = new String(buffer.array(), 0, buffer.limit(), LATIN1);
+         int end = HeaderStamper.findPackage(header);
+         if (end >= 0)
+         {
+            header = header.substring(0, end);
+         }
+         else if (buffer.limit() == channel.size())
+         {
+            // A class in the default package; like HeaderStamper, leave
+            // it alone rather than search its code.
+            return new StampResult(file, StampResult.Status.SKIPPED);
+         }
+         else
+         {
+            // The package statement may lie beyond the buffer; only the
+            // leading comments can be the header.
+            header = header.substring(0, leadingComments(header));
+         }
+
+         Matcher m = find(header);
+         String current = Integer.toString(year);
+         if (m == null)
+         {
+            result = new StampResult(file, StampResult.Status.SKIPPED);
+         }
+         else if (m.group(3) != null)
+         {
+            // A range; patch the second year in place.
+            if (Integer.parseInt(m.group(3)) >= year)
+            {
+               result = new StampResult(file, StampResult.Status.CURRENT);
+            }
+            else
+            {
+               patch = m.start(3);
+               result = new StampResult(file, StampResult.Status.STAMPED);
+            }
+         }
+         else if (Integer.parseInt(m.group(1)) >= year)
+         {
+            result = new StampResult(file, StampResult.Status.CURRENT);
+         }
+         else
+         {
+            if (!check && file.canWrite())
+            {
+               byte[] head = header.substring(0, m.end(1)).concat("-" + current).getBytes(LATIN1);
+               replacement = rewrite(file, channel, head, m.end(1));
+            }
+            result = new StampResult(file, StampResult.Status.STAMPED);
+         }
+      }
+      catch (IOException e)
+      {
+         result = new StampResult(file, StampResult.Status.FAILED, e.getMessage());
+      }
+      finally
+      {
+         if (raf != null) try
+         {
+            raf.close();
+         }
+         catch (IOException e)
+         {
+         }
+      }
+
+      if (check || result.getStatus() != StampResult.Status.STAMPED)
+      {
+         return result;
+      }
+      if (!file.canWrite())
+      {
+         if (replacement != null)
+         {
+            replacement.delete();
+         }
+         return new StampResult(file, StampResult.Status.FAILED, "File is read only");
+      }
+      if (patch >= 0)
+      {
+         try
+         {
+            patch(file, patch, Integer.toString(year).getBytes(LATIN1));
+         }
+         catch (IOException e)
+         {
+            result = new StampResult(file, StampResult.Status.FAILED, e.getMessage());
+         }
+      }
+      if (replacement != null)
+      {
+         try
+         {
+            HeaderStamper.copyAttributes(file, replacement);
+            Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+         }
+         catch (IOException e)
+         {
+            replacement.delete();
+            result = new StampResult(file, StampResult.Status.FAILED, e.getMessage());
+         }
+      }
+      return result;
+   }
+
+   /** Overwrites the bytes at <code>position</code> in place. */
+   protected void patch(File file, long position, byte[] bytes) throws IOException
+   {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try
+      {
+         FileChannel channel = raf.getChannel();
+         ByteBuffer buffer = ByteBuffer.wrap(bytes);
+         while (buffer.hasRemaining())
+         {
+            position += channel.write(buffer, position);
+         }
+      }
+      finally
+      {
+         raf.close();
+      }
+   }
+
+   /** Returns the notice to update, or null. */
+   protected Matcher find(String header)
+   {
+      Matcher m = NOTICE.matcher(header);
+      while (m.find())
+      {
+         if (holder == null || line(header, m.end()).contains(holder))
+         {
+            return m;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Writes <code>head</code> followed by the original file from
+    * <code>offset</code> to a temporary file, which is returned.
+    */
+   protected File rewrite(File file, FileChannel in, byte[] head, long offset) throws IOException
+   {
+      File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+      FileOutputStream stream = new FileOutputStream(temp);
+      try
+      {
+         FileChannel out = stream.getChannel();
+         ByteBuffer buffer = ByteBuffer.wrap(head);
+         while (buffer.hasRemaining())
+         {
+            out.write(buffer);
+         }
+         long size = in.size();
+         while (offset < size)
+         {
+            offset += in.transferTo(offset, size - offset, out);
+         }
+      }
+      catch (IOException e)
+      {
+         stream.close();
+         temp.delete();
+         throw e;
+      }
+      stream.close();
+      return temp;
+   }
+
+   /**
+    * Returns the end of the comments and blank lines at the start of
+    * <code>text</code>. A comment that is not closed runs to the end.
+    */
+   protected static int leadingComments(String text)
+   {
+      int i = 0;
+      while (i < text.length())
+      {
+         if (Character.isWhitespace(text.charAt(i)))
+         {
+            ++i;
+         }
+         else if (text.startsWith("//", i))
+         {
+            int end = text.indexOf('\n', i);
+            i = end < 0 ? text.length() : end + 1;
+         }
+         else if (text.startsWith("/*", i))
+         {
+            int end = text.indexOf("*/", i + 2);
+            i = end < 0 ? text.length() : end + 2;
+         }
+         else
+         {
+            break;
+         }
+      }
+      return i;
+   }
+
+   protected static String line(String text, int start)
+   {
+      int end = text.indexOf('\n', start);
+      return end < 0 ? text.substring(start) : text.substring(start, end);
+   }
+}
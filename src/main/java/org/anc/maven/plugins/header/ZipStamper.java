@@ -0,0 +1,447 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Applies a {@link HeaderStamper} to the Java and Groovy entries of a zip or
+ * jar file, writing a new archive.
+ * <p>
+ * The archive is copied in one sequential pass in the order the entries are
+ * stored. Entries that do not change, including every non-source entry, are
+ * copied raw, local header, compressed data and data descriptor, with a
+ * single channel transfer and are never inflated or recompressed. Only a
+ * source entry whose header must change is inflated, stamped and compressed
+ * again, so memory use is bounded by the largest source entry plus the
+ * central directory. Nothing is extracted to disk.
+ * <p>
+ * Zip64 archives (over 4GB or 65535 entries) are not supported.
+ */
+public class ZipStamper
+{
+   protected static final int LOCAL_SIGNATURE = 0x04034b50;
+   protected static final int CENTRAL_SIGNATURE = 0x02014b50;
+   protected static final int END_SIGNATURE = 0x06054b50;
+   protected static final int LOCAL_SIZE = 30;
+   protected static final int CENTRAL_SIZE = 46;
+   protected static final int END_SIZE = 22;
+   protected static final long MAX_OFFSET = 0xFFFFFFFFL;
+
+   protected static final int STORED = 0;
+   protected static final int DEFLATED = 8;
+   protected static final int ENCRYPTED = 0x1;
+   protected static final int DATA_DESCRIPTOR = 0x8;
+   protected static final int UTF8_NAMES = 0x800;
+
+   protected HeaderStamper stamper;
+
+   public ZipStamper(HeaderStamper stamper)
+   {
+      this.stamper = stamper;
+   }
+
+   /**
+    * Stamps the source entries of <code>archive</code>, writing the result
+    * to <code>output</code>. If <code>output</code> is null, or the stamper
+    * is in check mode, the entries are only classified.
+    *
+    * @return one result for each Java or Groovy entry.
+    */
+   public List<StampResult> process(File archive, File output) throws IOException
+   {
+      boolean write = output != null && !stamper.check;
+      FileInputStream inStream = new FileInputStream(archive);
+      FileOutputStream outStream = null;
+      try
+      {
+         FileChannel in = inStream.getChannel();
+         FileChannel out = null;
+         if (write)
+         {
+            outStream = new FileOutputStream(output);
+            out = outStream.getChannel();
+         }
+         return process(archive, in, out);
+      }
+      finally
+      {
+         inStream.close();
+         if (outStream != null)
+         {
+            outStream.close();
+         }
+      }
+   }
+
+   protected List<StampResult> process(File archive, FileChannel in, FileChannel out) throws IOException
+   {
+      ByteBuffer end = findEnd(in);
+      long centralOffset = end.getInt(16) & MAX_OFFSET;
+      long centralSize = end.getInt(12) & MAX_OFFSET;
+      List<Entry> central = readCentral(in, centralOffset, centralSize, end.getShort(10) & 0xFFFF);
+
+      // Copy the entries in the order they are stored in.
+      List<Entry> stored = new ArrayList<Entry>(central);
+      Collections.sort(stored, new Comparator<Entry>() {
+         public int compare(Entry a, Entry b)
+         {
+            return a.offset < b.offset ? -1 : a.offset == b.offset ? 0 : 1;
+         }
+      });
+
+      List<StampResult> results = new ArrayList<StampResult>();
+      if (out != null && !stored.isEmpty() && stored.get(0).offset > 0)
+      {
+         // Anything in front of the first entry, e.g. a launcher script.
+         transfer(in, 0, stored.get(0).offset, out);
+      }
+      for (int i = 0; i < stored.size(); ++i)
+      {
+         Entry entry = stored.get(i);
+         long next = i + 1 < stored.size() ? stored.get(i + 1).offset : centralOffset;
+         byte[] stamped = null;
+         if (SourceFilter.isSource(entry.name) && !entry.name.endsWith("/"))
+         {
+            StampResult result = classify(archive, in, entry);
+            results.add(result);
+            if (result.getStatus() == StampResult.Status.STAMPED)
+            {
+               stamped = entry.content;
+            }
+            entry.content = null;
+         }
+         if (out == null)
+         {
+            continue;
+         }
+         long position = out.position();
+         if (position > MAX_OFFSET)
+         {
+            throw new IOException("The archive is too large; Zip64 is not supported.");
+         }
+         if (stamped == null)
+         {
+            transfer(in, entry.offset, next - entry.offset, out);
+         }
+         else
+         {
+            writeEntry(in, entry, stamped, out);
+         }
+         entry.record.putInt(42, (int) position);
+      }
+
+      if (out != null)
+      {
+         long position = out.position();
+         if (position > MAX_OFFSET)
+         {
+            throw new IOException("The archive is too large; Zip64 is not supported.");
+         }
+         for (Entry entry : central)
+         {
+            entry.record.rewind();
+            writeFully(out, entry.record);
+         }
+         end.putInt(16, (int) position);
+         end.rewind();
+         writeFully(out, end);
+      }
+      return results;
+   }
+
+   /**
+    * Classifies a source entry. If the entry must be stamped the stamped
+    * bytes are left in <code>entry.content</code>.
+    */
+   protected StampResult classify(File archive, FileChannel in, Entry entry) throws IOException
+   {
+      if ((entry.flags & ENCRYPTED) != 0 || (entry.method != STORED && entry.method != DEFLATED))
+      {
+         return new StampResult(archive, entry.name, StampResult.Status.SKIPPED, null);
+      }
+      String source;
+      try
+      {
+         source = stamper.decode(readContent(in, entry));
+      }
+      catch (CharacterCodingException e)
+      {
+         return new StampResult(archive, entry.name, StampResult.Status.FAILED,
+               "Not valid " + stamper.charset.name());
+      }
+      catch (DataFormatException e)
+      {
+         return new StampResult(archive, entry.name, StampResult.Status.FAILED, e.getMessage());
+      }
+      int offset = HeaderStamper.findPackage(source);
+      StampResult.Status status = stamper.classify(source, offset);
+      if (status == StampResult.Status.STAMPED)
+      {
+         entry.content = stamper.render(source, offset).getBytes(stamper.charset);
+      }
+      return new StampResult(archive, entry.name, status, null);
+   }
+
+   protected byte[] readContent(FileChannel in, Entry entry) throws IOException, DataFormatException
+   {
+      ByteBuffer local = read(in, entry.offset, LOCAL_SIZE);
+      if (local.getInt(0) != LOCAL_SIGNATURE)
+      {
+         throw new IOException("Bad local header for " + entry.name);
+      }
+      entry.localExtra = local.getShort(28) & 0xFFFF;
+      long data = entry.offset + LOCAL_SIZE + (local.getShort(26) & 0xFFFF) + entry.localExtra;
+      byte[] compressed = new byte[(int) entry.compressedSize];
+      read(in, data, ByteBuffer.wrap(compressed));
+      if (entry.method == STORED)
+      {
+         return compressed;
+      }
+
+      Inflater inflater = new Inflater(true);
+      try
+      {
+         // The inflater needs one byte past the end of the data when there
+         // is no zlib wrapper.
+         byte[] input = new byte[compressed.length + 1];
+         System.arraycopy(compressed, 0, input, 0, compressed.length);
+         inflater.setInput(input);
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(entry.size, 1 << 24));
+         byte[] buffer = new byte[8192];
+         while (!inflater.finished())
+         {
+            int n = inflater.inflate(buffer);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            {
+               throw new DataFormatException("Truncated entry " + entry.name);
+            }
+            bytes.write(buffer, 0, n);
+         }
+         return bytes.toByteArray();
+      }
+      finally
+      {
+         inflater.end();
+      }
+   }
+
+   /** Writes a new local header and data for a stamped entry. */
+   protected void writeEntry(FileChannel in, Entry entry, byte[] content, FileChannel out) throws IOException
+   {
+      CRC32 crc = new CRC32();
+      crc.update(content, 0, content.length);
+      byte[] data = entry.method == DEFLATED ? deflate(content) : content;
+
+      ByteBuffer record = entry.record;
+      int flags = entry.flags & ~DATA_DESCRIPTOR;
+      record.putShort(8, (short) flags);
+      record.putInt(16, (int) crc.getValue());
+      record.putInt(20, data.length);
+      record.putInt(24, content.length);
+
+      int nameLength = record.getShort(28) & 0xFFFF;
+      ByteBuffer extra = read(in, entry.offset + LOCAL_SIZE + nameLength, entry.localExtra);
+      ByteBuffer local = ByteBuffer.allocate(LOCAL_SIZE + nameLength + entry.localExtra)
+            .order(ByteOrder.LITTLE_ENDIAN);
+      local.putInt(LOCAL_SIGNATURE);
+      local.putShort(record.getShort(6));
+      local.putShort((short) flags);
+      local.putShort((short) entry.method);
+      local.putShort(record.getShort(12));
+      local.putShort(record.getShort(14));
+      local.putInt((int) crc.getValue());
+      local.putInt(data.length);
+      local.putInt(content.length);
+      local.putShort((short) nameLength);
+      local.putShort((short) entry.localExtra);
+      for (int i = 0; i < nameLength; ++i)
+      {
+         local.put(record.get(CENTRAL_SIZE + i));
+      }
+      local.put(extra);
+      local.flip();
+      writeFully(out, local);
+      writeFully(out, ByteBuffer.wrap(data));
+   }
+
+   protected static byte[] deflate(byte[] content)
+   {
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      try
+      {
+         deflater.setInput(content);
+         deflater.finish();
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 2 + 64);
+         byte[] buffer = new byte[8192];
+         while (!deflater.finished())
+         {
+            int n = deflater.deflate(buffer);
+            bytes.write(buffer, 0, n);
+         }
+         return bytes.toByteArray();
+      }
+      finally
+      {
+         deflater.end();
+      }
+   }
+
+   /** Locates and returns the end of central directory record. */
+   protected static ByteBuffer findEnd(FileChannel in) throws IOException
+   {
+      long size = in.size();
+      int length = (int) Math.min(size, END_SIZE + 0xFFFF);
+      ByteBuffer tail = read(in, size - length, length);
+      for (int i = length - END_SIZE; i >= 0; --i)
+      {
+         if (tail.getInt(i) == END_SIGNATURE
+               && i + END_SIZE + (tail.getShort(i + 20) & 0xFFFF) == length)
+         {
+            ByteBuffer end = ByteBuffer.allocate(length - i).order(ByteOrder.LITTLE_ENDIAN);
+            for (int j = i; j < length; ++j)
+            {
+               end.put(tail.get(j));
+            }
+            end.rewind();
+            if ((end.getShort(10) & 0xFFFF) == 0xFFFF || end.getInt(12) == -1 || end.getInt(16) == -1)
+            {
+               throw new IOException("Zip64 archives are not supported.");
+            }
+            return end;
+         }
+      }
+      throw new IOException("Not a zip file.");
+   }
+
+   protected static List<Entry> readCentral(FileChannel in, long offset, long size, int count) throws IOException
+   {
+      ByteBuffer buffer = read(in, offset, (int) size);
+      List<Entry> entries = new ArrayList<Entry>(count);
+      int position = 0;
+      for (int i = 0; i < count; ++i)
+      {
+         if (buffer.getInt(position) != CENTRAL_SIGNATURE)
+         {
+            throw new IOException("Bad central directory entry " + i);
+         }
+         int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+         int length = CENTRAL_SIZE + nameLength
+               + (buffer.getShort(position + 30) & 0xFFFF)
+               + (buffer.getShort(position + 32) & 0xFFFF);
+         Entry entry = new Entry();
+         entry.record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+         for (int j = 0; j < length; ++j)
+         {
+            entry.record.put(buffer.get(position + j));
+         }
+         entry.flags = entry.record.getShort(8) & 0xFFFF;
+         entry.method = entry.record.getShort(10) & 0xFFFF;
+         entry.compressedSize = entry.record.getInt(20) & MAX_OFFSET;
+         entry.size = entry.record.getInt(24) & MAX_OFFSET;
+         entry.offset = entry.record.getInt(42) & MAX_OFFSET;
+         if (entry.compressedSize == MAX_OFFSET || entry.size == MAX_OFFSET || entry.offset == MAX_OFFSET)
+         {
+            throw new IOException("Zip64 archives are not supported.");
+         }
+         byte[] name = new byte[nameLength];
+         for (int j = 0; j < nameLength; ++j)
+         {
+            name[j] = entry.record.get(CENTRAL_SIZE + j);
+         }
+         entry.name = new String(name, Charset.forName((entry.flags & UTF8_NAMES) != 0 ? "UTF-8" : "IBM437"));
+         entries.add(entry);
+         position += length;
+      }
+      return entries;
+   }
+
+   protected static ByteBuffer read(FileChannel in, long position, int length) throws IOException
+   {
+      ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+      read(in, position, buffer);
+      buffer.rewind();
+      return buffer;
+   }
+
+   protected static void read(FileChannel in, long position, ByteBuffer buffer) throws IOException
+   {
+      while (buffer.hasRemaining())
+      {
+         int n = in.read(buffer, position);
+         if (n < 0)
+         {
+            throw new EOFException();
+         }
+         position += n;
+      }
+   }
+
+   protected static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException
+   {
+      while (count > 0)
+      {
+         long n = in.transferTo(position, count, out);
+         if (n <= 0)
+         {
+            throw new EOFException();
+         }
+         position += n;
+         count -= n;
+      }
+   }
+
+   protected static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException
+   {
+      while (buffer.hasRemaining())
+      {
+         out.write(buffer);
+      }
+   }
+
+   /** A central directory record and the fields read from it. */
+   protected static class Entry
+   {
+      ByteBuffer record;
+      String name;
+      int flags;
+      int method;
+      long compressedSize;
+      long size;
+      long offset;
+      int localExtra;
+      byte[] content;
+   }
+}
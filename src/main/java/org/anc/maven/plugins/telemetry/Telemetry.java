@@ -0,0 +1,149 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.telemetry;
+
+/**
+ * Records what the plugin does as Java Flight Recorder events.
+ * <p>
+ * The plugin targets Java 1.8, where <tt>jdk.jfr</tt> may not exist, so the
+ * goals only ever see this class. {@link #get()} returns a
+ * <tt>JfrTelemetry</tt> if the JVM has <tt>jdk.jfr</tt> and the plugin was
+ * built with it (on JDK 11 or later); otherwise it returns {@link #NONE},
+ * whose methods do nothing. Only the presence of JFR is decided once; whether
+ * an event is recorded is checked each time one starts, so a recording
+ * started later, for example with <tt>jcmd PID JFR.start</tt> in a build
+ * daemon, sees the plugin's events. All of the events are disabled by
+ * default, and a disabled event costs a single check.
+ * Callers should only compute the values they pass to a {@link Span} when
+ * {@link Span#isEnabled()} is true. To record the events, start the build
+ * with the settings file bundled in the plugin jar as
+ * <tt>jfr/anc-maven-plugin.jfc</tt>:
+ * <pre>
+ *   MAVEN_OPTS="-XX:StartFlightRecording=settings=/path/to/anc-maven-plugin.jfc,filename=build.jfr" mvn install
+ * </pre>
+ * Each method starts an event and returns a {@link Span}; the caller fills
+ * in the fields it knows and calls {@link Span#end()}.
+ */
+public class Telemetry
+{
+   protected static final String JFR_TELEMETRY = "org.anc.maven.plugins.telemetry.JfrTelemetry";
+
+   /** Telemetry that records nothing. */
+   public static final Telemetry NONE = new Telemetry();
+
+   protected Telemetry()
+   {
+   }
+
+   /**
+    * Returns the telemetry for this JVM. JFR is looked for on the first call
+    * only.
+    */
+   public static Telemetry get()
+   {
+      return Holder.INSTANCE;
+   }
+
+   private static Telemetry create()
+   {
+      try
+      {
+         Class.forName("jdk.jfr.Event");
+         return (Telemetry) Class.forName(JFR_TELEMETRY).getDeclaredConstructor().newInstance();
+      }
+      catch (Throwable e)
+      {
+         // No JFR in this JVM, or the plugin was built without it.
+         return NONE;
+      }
+   }
+
+   /** Defers the JFR lookup until a goal first asks for telemetry. */
+   private static class Holder
+   {
+      static final Telemetry INSTANCE = create();
+   }
+
+   /** Reading a notice or license text; <code>path</code> is its source. */
+   public Span noticeLoad(String goal, String path)
+   {
+      return Span.NONE;
+   }
+
+   /** Listing the source files below <code>path</code>. */
+   public Span traversal(String path)
+   {
+      return Span.NONE;
+   }
+
+   /** Reading a source file and deciding whether it needs a new header. */
+   public Span classify(String path)
+   {
+      return Span.NONE;
+   }
+
+   /** Writing a source file with its new header. */
+   public Span rewrite(String path)
+   {
+      return Span.NONE;
+   }
+
+   /** Writing, or deciding not to write, a generated file. */
+   public Span generatedFile(String goal, String path)
+   {
+      return Span.NONE;
+   }
+
+   /** An event in progress. The fields an event does not have are ignored. */
+   public static class Span
+   {
+      public static final Span NONE = new Span();
+
+      protected Span()
+      {
+      }
+
+      /** True if the event will be recorded, and so its fields are worth computing. */
+      public boolean isEnabled()
+      {
+         return false;
+      }
+
+      /** The size of the file read or written. */
+      public Span bytes(long bytes)
+      {
+         return this;
+      }
+
+      /** What was decided, for example <tt>STAMPED</tt> or <tt>unchanged</tt>. */
+      public Span decision(String decision)
+      {
+         return this;
+      }
+
+      /** The number of files found. */
+      public Span files(int files)
+      {
+         return this;
+      }
+
+      /** Ends the event and records it if it is enabled. */
+      public void end()
+      {
+      }
+   }
+}
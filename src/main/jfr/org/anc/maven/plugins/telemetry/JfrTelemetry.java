@@ -0,0 +1,191 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * {@link Telemetry} backed by Java Flight Recorder events.
+ * <p>
+ * This class is only compiled on JDK 11 or later (the <tt>jfr</tt> profile)
+ * and only loaded when <tt>jdk.jfr</tt> is available. An event
+ * object is only filled in and committed when its type is enabled in the
+ * running recording; otherwise {@link Telemetry.Span#NONE} is returned.
+ */
+class JfrTelemetry extends Telemetry
+{
+   static final String CATEGORY = "ANC Maven Plugin";
+
+   JfrTelemetry()
+   {
+   }
+
+   @Override
+   public Span noticeLoad(String goal, String path)
+   {
+      return start(new NoticeLoadEvent(), goal, path);
+   }
+
+   @Override
+   public Span traversal(String path)
+   {
+      return start(new TraversalEvent(), null, path);
+   }
+
+   @Override
+   public Span classify(String path)
+   {
+      return start(new ClassifyEvent(), null, path);
+   }
+
+   @Override
+   public Span rewrite(String path)
+   {
+      return start(new RewriteEvent(), null, path);
+   }
+
+   @Override
+   public Span generatedFile(String goal, String path)
+   {
+      return start(new GeneratedFileEvent(), goal, path);
+   }
+
+   protected static Span start(PluginEvent event, String goal, String path)
+   {
+      if (!event.isEnabled())
+      {
+         return Span.NONE;
+      }
+      event.goal = goal;
+      event.path = path;
+      event.begin();
+      return new JfrSpan(event);
+   }
+
+   static class JfrSpan extends Span
+   {
+      protected final PluginEvent event;
+
+      JfrSpan(PluginEvent event)
+      {
+         this.event = event;
+      }
+
+      @Override
+      public boolean isEnabled()
+      {
+         return true;
+      }
+
+      @Override
+      public Span bytes(long bytes)
+      {
+         event.bytes = bytes;
+         return this;
+      }
+
+      @Override
+      public Span decision(String decision)
+      {
+         event.decision = decision;
+         return this;
+      }
+
+      @Override
+      public Span files(int files)
+      {
+         if (event instanceof TraversalEvent)
+         {
+            ((TraversalEvent) event).files = files;
+         }
+         return this;
+      }
+
+      @Override
+      public void end()
+      {
+         event.end();
+         if (event.shouldCommit())
+         {
+            event.commit();
+         }
+      }
+   }
+
+   @Category(CATEGORY)
+   @StackTrace(false)
+   @Enabled(false)
+   abstract static class PluginEvent extends Event
+   {
+      @Label("Goal")
+      String goal;
+
+      @Label("Path")
+      String path;
+
+      @Label("Bytes")
+      @DataAmount
+      long bytes;
+
+      @Label("Decision")
+      String decision;
+   }
+
+   @Name("org.anc.maven.NoticeLoad")
+   @Label("Notice Load")
+   @Description("Reading a copyright notice or license text")
+   static class NoticeLoadEvent extends PluginEvent
+   {
+   }
+
+   @Name("org.anc.maven.Traversal")
+   @Label("Source Traversal")
+   @Description("Listing the source files below a directory")
+   static class TraversalEvent extends PluginEvent
+   {
+      @Label("Files")
+      int files;
+   }
+
+   @Name("org.anc.maven.Classify")
+   @Label("Header Classification")
+   @Description("Reading a source file and deciding whether its header must change")
+   static class ClassifyEvent extends PluginEvent
+   {
+   }
+
+   @Name("org.anc.maven.Rewrite")
+   @Label("Header Rewrite")
+   @Description("Writing a source file with a new header")
+   static class RewriteEvent extends PluginEvent
+   {
+   }
+
+   @Name("org.anc.maven.GeneratedFile")
+   @Label("Generated File")
+   @Description("Writing, or skipping, a file generated by a goal")
+   static class GeneratedFileEvent extends PluginEvent
+   {
+   }
+}
@@ -0,0 +1,128 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.Mojo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class CopyrightInventoryTest
+{
+   protected TestProject project;
+   protected CopyrightInventory goal;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      SourceTree sources = project.sources();
+      sources.stamped("org.example", "Ours");
+      sources.stale("org.example", "Stale", "2009-2020");
+      sources.write("org/example/Lesser.java", "/*\n * Copyright 2015 Someone Else\n"
+            + " * GNU Lesser General Public License\n */\n" + SourceTree.body("org.example", "Lesser", "\n"));
+      sources.write("org/example/Plain.java", SourceTree.body("org.example", "Plain", "\n"));
+      sources.write("org/example/notes.txt", "Copyright 2001 Not a source file\n");
+      project.write("target/generated/Gen.java", "// Copyright 2001 Generated\n");
+      goal = project.inventory();
+      goal.staleYear = 2025;
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   /** Reads the report into a map from path to the other columns. */
+   protected Map<String,String[]> report() throws Exception
+   {
+      String[] lines = TestProject.text(goal.report).split("\n");
+      assertEquals("path\tholder\tyear\tstale\tpatterns\tcopyright", lines[0]);
+      Map<String,String[]> rows = new HashMap<String,String[]>();
+      for (int i = 1; i < lines.length; ++i)
+      {
+         String[] columns = lines[i].split("\t", -1);
+         assertEquals(lines[i], 6, columns.length);
+         rows.put(columns[0], columns);
+      }
+      return rows;
+   }
+
+   @Test
+   public void reportsEverySource() throws Exception
+   {
+      goal.execute();
+      Map<String,String[]> rows = report();
+      assertEquals(4, rows.size());
+      assertNull(rows.get("target/generated/Gen.java"));
+      assertNull(rows.get("src/main/java/org/example/notes.txt"));
+
+      String[] ours = rows.get("src/main/java/org/example/Ours.java");
+      assertArrayEquals(new String[] { "ours", "2026", "false", "Copyright", "2026 The American National Corpus" },
+            tail(ours));
+      String[] stale = rows.get("src/main/java/org/example/Stale.java");
+      assertArrayEquals(new String[] { "ours", "2020", "true", "Copyright", "(c) 2009-2020 The American National Corpus" },
+            tail(stale));
+      String[] plain = rows.get("src/main/java/org/example/Plain.java");
+      assertArrayEquals(new String[] { "none", "", "false", "", "" }, tail(plain));
+   }
+
+   @Test
+   public void lesserGplIsNotAlsoGpl() throws Exception
+   {
+      goal.execute();
+      String[] lesser = report().get("src/main/java/org/example/Lesser.java");
+      assertArrayEquals(new String[] { "other", "2015", "true", "Copyright,GNU Lesser General Public License",
+            "2015 Someone Else" }, tail(lesser));
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      goal.execute();
+      final byte[] expected = SourceTree.read(goal.report);
+      goal.report.delete();
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            CopyrightInventory goal = project.inventory();
+            goal.staleYear = 2025;
+            goal.threads = 2;
+            return goal;
+         }
+      }));
+      assertArrayEquals(expected, SourceTree.read(goal.report));
+   }
+
+   protected static String[] tail(String[] row)
+   {
+      String[] result = new String[row.length - 1];
+      System.arraycopy(row, 1, result, 0, result.length);
+      return result;
+   }
+}
@@ -0,0 +1,123 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class FingerprintTest
+{
+   protected TestProject project;
+   protected File directory;
+   protected File input;
+   protected File output;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      directory = new File(project.getTarget(), "anc-maven-plugin");
+      input = project.write("LICENSE", "The license.\n");
+      output = project.write("LICENSE.txt", "The license.\n");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   protected Fingerprint fingerprint(String option)
+   {
+      return new Fingerprint(directory, "license", project.getBasedir(), output)
+            .input("option", option)
+            .input("license", input);
+   }
+
+   @Test
+   public void namedByGoalAndOutput() throws Exception
+   {
+      Fingerprint a = new Fingerprint(directory, "license", project.getBasedir(), output);
+      Fingerprint b = new Fingerprint(directory, "license", project.getBasedir(), project.file("OTHER"));
+      assertTrue(a.file.getName().matches("license-[0-9a-f]{12}\\.fingerprint"));
+      assertFalse(a.file.equals(b.file));
+      assertEquals(a.file, new Fingerprint(directory, "license", project.getBasedir(), output).file);
+   }
+
+   @Test
+   public void upToDateUntilSomethingChanges() throws Exception
+   {
+      assertFalse(fingerprint("a").isUpToDate());
+      fingerprint("a").save();
+      assertTrue(fingerprint("a").isUpToDate());
+      assertFalse(fingerprint("b").isUpToDate());
+
+      Files.write(input.toPath(), "Another license.\n".getBytes(SourceTree.UTF8));
+      assertFalse(fingerprint("a").isUpToDate());
+      fingerprint("a").save();
+      assertTrue(fingerprint("a").isUpToDate());
+
+      output.delete();
+      assertFalse(fingerprint("a").isUpToDate());
+   }
+
+   @Test
+   public void recordsRelativePaths() throws Exception
+   {
+      Fingerprint fingerprint = fingerprint("a");
+      String text = fingerprint.render();
+      assertTrue(text, text.contains("license=LICENSE,"));
+      assertTrue(text, text.contains("output=LICENSE.txt,"));
+      assertFalse(text, text.contains(project.getBasedir().getPath()));
+   }
+
+   /** A file whose length and modification time are unchanged is not hashed again. */
+   @Test
+   public void reusesCachedHash() throws Exception
+   {
+      fingerprint("a").save();
+      String saved = TestProject.text(fingerprint("a").file);
+      assertTrue(saved, saved.contains(Fingerprint.STAT + input.getAbsolutePath() + ","));
+
+      long modified = input.lastModified();
+      Files.write(input.toPath(), "The LICENSE.\n".getBytes(SourceTree.UTF8));
+      input.setLastModified(modified);
+      assertTrue(fingerprint("a").isUpToDate());
+
+      input.setLastModified(modified + 10000);
+      assertFalse(fingerprint("a").isUpToDate());
+   }
+
+   @Test
+   public void withoutDirectoryNeverUpToDate() throws Exception
+   {
+      Fingerprint fingerprint = new Fingerprint(null, "license", project.getBasedir(), output);
+      fingerprint.save();
+      assertFalse(fingerprint.isUpToDate());
+      assertFalse(directory.exists());
+   }
+}
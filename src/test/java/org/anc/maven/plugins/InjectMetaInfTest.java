@@ -0,0 +1,118 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class InjectMetaInfTest
+{
+   protected TestProject project;
+   protected File license;
+   protected File notice;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      File metaInf = new File(project.getTarget(), "classes/META-INF");
+      license = new File(metaInf, "LICENSE");
+      notice = new File(metaInf, "COPYRIGHT");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   protected void assertBundledTexts() throws Exception
+   {
+      assertArrayEquals(GeneratedFiles.toBytes(BundledResources.lines(WriteLicense.DEFAULT_LICENSE)),
+            SourceTree.read(license));
+      assertArrayEquals(GeneratedFiles.toBytes(project.copyright().loadNotice()),
+            SourceTree.read(notice));
+   }
+
+   @Test
+   public void writesLicenseAndNotice() throws Exception
+   {
+      project.metaInf().execute();
+      assertBundledTexts();
+   }
+
+   @Test
+   public void leavesIdenticalFilesAlone() throws Exception
+   {
+      project.metaInf().execute();
+      TestProject.age(license);
+      TestProject.age(notice);
+      project.metaInf().execute();
+      assertFalse(TestProject.isRewritten(license));
+      assertFalse(TestProject.isRewritten(notice));
+   }
+
+   @Test
+   public void onlyWritesSelectedFiles() throws Exception
+   {
+      InjectMetaInf goal = project.metaInf();
+      goal.includeLicense = Boolean.FALSE;
+      goal.execute();
+      assertFalse(license.exists());
+      assertTrue(notice.isFile());
+   }
+
+   @Test
+   public void emptyLicenseFails() throws Exception
+   {
+      project.write("LICENSE", "");
+      try
+      {
+         project.metaInf().execute();
+         fail("Wrote an empty license.");
+      }
+      catch (MojoExecutionException e)
+      {
+         assertEquals("Nothing to write to " + license.getPath(), e.getMessage());
+      }
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            return project.metaInf();
+         }
+      }));
+      assertBundledTexts();
+   }
+}
@@ -0,0 +1,125 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class LicenseIndexTest
+{
+   protected SourceTree tree;
+   protected File repository;
+   protected File jar;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+      repository = new File(tree.getRoot(), "repository");
+      jar = jar(new File(repository, "org/example/lib/1.0/lib-1.0.jar"),
+            "META-INF/LICENSE", "The license.", "META-INF/NOTICE.txt", "The notice.",
+            "org/example/Lib.class", "code", "META-INF/maven/LICENSE", "nested");
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   /** Writes a jar containing the given name, content pairs. */
+   public static File jar(File file, String... entries) throws Exception
+   {
+      file.getParentFile().mkdirs();
+      ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+      try
+      {
+         for (int i = 0; i < entries.length; i += 2)
+         {
+            out.putNextEntry(new ZipEntry(entries[i]));
+            out.write(entries[i + 1].getBytes(SourceTree.UTF8));
+            out.closeEntry();
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+      return file;
+   }
+
+   @Test
+   public void findsNoticesAndCoordinate() throws Exception
+   {
+      LicenseIndex index = new LicenseIndex(new File(tree.getRoot(), "index"), repository);
+      assertEquals("org.example:lib:1.0", index.coordinate(jar));
+      Map<String,String> entries = index.lookup(jar);
+      assertEquals(2, entries.size());
+      assertEquals("The license.", entries.get("META-INF/LICENSE"));
+      assertEquals("The notice.", entries.get("META-INF/NOTICE.txt"));
+      assertTrue(index.indexFile(jar).isFile());
+      assertEquals(entries, index.read(index.indexFile(jar), jar));
+   }
+
+   @Test
+   public void staleWhenJarChanges() throws Exception
+   {
+      LicenseIndex index = new LicenseIndex(new File(tree.getRoot(), "index"), repository);
+      index.lookup(jar);
+      jar.setLastModified(jar.lastModified() - 10000);
+      assertNull(index.read(index.indexFile(jar), jar));
+   }
+
+   @Test
+   public void damagedEntryIsStale() throws Exception
+   {
+      LicenseIndex index = new LicenseIndex(new File(tree.getRoot(), "index"), repository);
+      index.lookup(jar);
+      File cached = index.indexFile(jar);
+      String text = new String(Files.readAllBytes(cached.toPath()), SourceTree.UTF8);
+      Files.write(cached.toPath(), text.replaceAll("entries=2", "entries=5").getBytes(SourceTree.UTF8));
+      assertNull(index.read(cached, jar));
+      assertEquals(2, index.lookup(jar).size());
+   }
+
+   @Test
+   public void unwritableIndexStillReportsEntries() throws Exception
+   {
+      // A file where the index directory should be cannot be written to,
+      // even by the superuser.
+      File blocked = new File(tree.getRoot(), "index");
+      Files.write(blocked.toPath(), new byte[0]);
+      LicenseIndex index = new LicenseIndex(blocked, repository);
+      Map<String,String> entries = index.lookup(jar);
+      assertEquals(2, entries.size());
+      assertTrue(blocked.isFile());
+   }
+}
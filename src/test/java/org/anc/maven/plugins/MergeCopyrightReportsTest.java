@@ -0,0 +1,173 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.HeaderStamper;
+import org.anc.maven.plugins.header.ShardReport;
+import org.anc.maven.plugins.header.SourceTree;
+import org.anc.maven.plugins.header.StampResult;
+
+public class MergeCopyrightReportsTest
+{
+   protected SourceTree tree;
+   protected File reports;
+   protected MergeCopyrightReports merge;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+      reports = new File(tree.getRoot(), "reports");
+      merge = new MergeCopyrightReports();
+      merge.reportDirectory = reports;
+      merge.shardCount = 0;
+      merge.report = new File(tree.getRoot(), "merged.txt");
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   /** Runs the stamper over every shard of the tree and writes the reports. */
+   protected List<File> runShards(int count, boolean check) throws Exception
+   {
+      File src = new File(tree.getRoot(), "src");
+      List<File> files = new SourceTree(src).generate(10);
+      HeaderStamper stamper = new HeaderStamper(SourceTree.NOTICE);
+      stamper.setCharset(SourceTree.UTF8);
+      stamper.setCheck(check);
+      for (int shard = 0; shard < count; ++shard)
+      {
+         ShardReport report = new ShardReport(shard, count, check ? "check" : "stamp");
+         report.addAll(src, stamper.process(ShardReport.select(src, files, shard, count)));
+         report.write(new File(reports, ShardReport.fileName(shard, count)));
+      }
+      return files;
+   }
+
+   @Test
+   public void mergesEveryShard() throws Exception
+   {
+      List<File> files = runShards(3, false);
+      try
+      {
+         merge.execute();
+         fail("The Latin-1 files should fail.");
+      }
+      catch (MojoFailureException e)
+      {
+         assertEquals("10 files could not be processed.", e.getMessage());
+      }
+      ShardReport merged = ShardReport.read(merge.report);
+      assertEquals(files.size(), merged.getEntries().size());
+      assertEquals(31, merged.count(StampResult.Status.STAMPED.name()));
+      assertEquals("stamp", merged.getMode());
+
+      // Merging the same reports again gives the same report.
+      byte[] first = SourceTree.read(merge.report);
+      try
+      {
+         merge.execute();
+      }
+      catch (MojoFailureException e)
+      {
+      }
+      assertArrayEquals(first, SourceTree.read(merge.report));
+   }
+
+   @Test
+   public void checkFailsOnStaleFiles() throws Exception
+   {
+      ShardReport report = new ShardReport(0, 2, "check");
+      report.add("CURRENT", "a/A.java", null);
+      report.write(new File(reports, ShardReport.fileName(0, 2)));
+      report = new ShardReport(1, 2, "check");
+      report.add("STAMPED", "b/B.java", null);
+      report.write(new File(reports, ShardReport.fileName(1, 2)));
+      try
+      {
+         merge.execute();
+         fail("A stale file passed the check.");
+      }
+      catch (MojoFailureException e)
+      {
+         assertEquals("1 files have a missing or out of date copyright notice.", e.getMessage());
+      }
+   }
+
+   @Test
+   public void passesWhenEveryShardIsCurrent() throws Exception
+   {
+      for (int shard = 0; shard < 2; ++shard)
+      {
+         ShardReport report = new ShardReport(shard, 2, "check");
+         report.add("CURRENT", "p" + shard + "/A.java", null);
+         report.add("SKIPPED", "p" + shard + "/B.java", null);
+         report.write(new File(reports, ShardReport.fileName(shard, 2)));
+      }
+      merge.execute();
+      assertEquals(4, ShardReport.read(merge.report).getEntries().size());
+   }
+
+   @Test
+   public void missingShardFails() throws Exception
+   {
+      runShards(3, true);
+      new File(reports, ShardReport.fileName(1, 3)).delete();
+      try
+      {
+         merge.execute();
+         fail("Merged without shard 1.");
+      }
+      catch (MojoExecutionException e)
+      {
+         assertTrue(e.getMessage().startsWith("Missing report for shard 1 of 3"));
+      }
+   }
+
+   @Test
+   public void differentModesFail() throws Exception
+   {
+      new ShardReport(0, 2, "check").write(new File(reports, ShardReport.fileName(0, 2)));
+      new ShardReport(1, 2, "stamp").write(new File(reports, ShardReport.fileName(1, 2)));
+      try
+      {
+         merge.execute();
+         fail("Merged shards run in different modes.");
+      }
+      catch (MojoExecutionException e)
+      {
+         assertEquals("Shard 1 ran in stamp mode, expected check", e.getMessage());
+      }
+   }
+}
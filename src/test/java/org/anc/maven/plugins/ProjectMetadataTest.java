@@ -0,0 +1,191 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class ProjectMetadataTest
+{
+   protected TestProject project;
+   protected Map<File,byte[]> expected;
+   protected List<File> outputs;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      expected = WriteCopyrightTest.stamped(project, project.sources(3));
+      outputs = Arrays.asList(
+            project.file("VERSION"),
+            project.file("src/main/java/org/example/Version.java"),
+            project.file("LICENSE.txt"),
+            new File(project.getTarget(), "COPYRIGHT"),
+            project.file("src/main/resources/logback.xml"),
+            project.file("src/test/resources/logback-test.xml"));
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   @Test
+   public void writesEveryOutput() throws Exception
+   {
+      project.metadata().execute();
+      for (File output : outputs)
+      {
+         assertTrue(output.getPath(), output.isFile());
+      }
+      assertEquals(TestProject.VERSION, TestProject.text(project.file("VERSION")));
+      assertArrayEquals(GeneratedFiles.toBytes(BundledResources.lines(WriteLicense.DEFAULT_LICENSE)),
+            SourceTree.read(project.file("LICENSE.txt")));
+      assertArrayEquals(GeneratedFiles.toBytes(project.copyright().loadNotice()),
+            SourceTree.read(new File(project.getTarget(), "COPYRIGHT")));
+      String version = TestProject.text(outputs.get(1));
+      assertTrue(version, version.startsWith("package org.example;"));
+      WriteCopyrightTest.assertContent(expected);
+   }
+
+   @Test
+   public void secondRunWritesNothing() throws Exception
+   {
+      project.metadata().execute();
+      for (File file : outputs)
+      {
+         TestProject.age(file);
+      }
+      for (File file : expected.keySet())
+      {
+         TestProject.age(file);
+      }
+      project.metadata().execute();
+      for (File file : outputs)
+      {
+         assertFalse(file.getPath(), TestProject.isRewritten(file));
+      }
+      for (File file : expected.keySet())
+      {
+         assertFalse(file.getPath(), TestProject.isRewritten(file));
+      }
+   }
+
+   @Test
+   public void writesOnlySelectedOutputs() throws Exception
+   {
+      Map<File,byte[]> sources = SourceTree.snapshot(new ArrayList<File>(expected.keySet()));
+      ProjectMetadata goal = project.metadata();
+      goal.outputs = "version, logback";
+      goal.execute();
+      assertTrue(project.file("VERSION").isFile());
+      assertTrue(project.file("src/main/resources/logback.xml").isFile());
+      assertFalse(project.file("LICENSE.txt").exists());
+      assertFalse(new File(project.getTarget(), "COPYRIGHT").exists());
+      WriteCopyrightTest.assertContent(sources);
+   }
+
+   @Test
+   public void logbackTestPreset() throws Exception
+   {
+      ProjectMetadata goal = project.metadata();
+      goal.outputs = "logback";
+      goal.logbackPreset = "rolling";
+      goal.execute();
+      assertTrue(TestProject.text(outputs.get(4)).contains("RollingFileAppender"));
+      assertFalse(TestProject.text(outputs.get(5)).contains("RollingFileAppender"));
+
+      // The same files as the logback goal writes.
+      byte[] main = SourceTree.read(outputs.get(4));
+      byte[] test = SourceTree.read(outputs.get(5));
+      WriteLogbackXml logback = project.logback();
+      logback.preset = "rolling";
+      logback.execute();
+      assertArrayEquals(main, SourceTree.read(outputs.get(4)));
+      assertArrayEquals(test, SourceTree.read(outputs.get(5)));
+   }
+
+   @Test
+   public void emptyLicenseFails() throws Exception
+   {
+      File license = project.write("LICENSE", "");
+      ProjectMetadata goal = project.metadata();
+      goal.outputs = "license";
+      try
+      {
+         goal.execute();
+         fail("Wrote an empty license.");
+      }
+      catch (MojoExecutionException e)
+      {
+         assertEquals("Nothing to write to " + project.file("LICENSE.txt").getPath(), e.getMessage());
+      }
+      assertTrue(license.isFile());
+      assertFalse(project.file("LICENSE.txt").exists());
+   }
+
+   @Test
+   public void unknownOutputFails() throws Exception
+   {
+      ProjectMetadata goal = project.metadata();
+      goal.outputs = "version,manifest";
+      try
+      {
+         goal.execute();
+         fail("Accepted an unknown output.");
+      }
+      catch (MojoFailureException e)
+      {
+         assertEquals("Unknown output manifest", e.getMessage());
+      }
+      assertFalse(project.file("VERSION").exists());
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            return project.metadata();
+         }
+      }));
+      WriteCopyrightTest.assertContent(expected);
+      Map<File,byte[]> written = SourceTree.snapshot(outputs);
+      project.metadata().execute();
+      WriteCopyrightTest.assertContent(written);
+   }
+}
@@ -0,0 +1,179 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.HeaderStamper;
+import org.anc.maven.plugins.header.SourceTree;
+
+public class StampArchiveTest
+{
+   protected TestProject project;
+   protected File archive;
+   protected Map<String,String> expected;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      HeaderStamper stamper = new HeaderStamper(project.copyright().loadNotice());
+      String unstamped = "// An old header.\n\n" + SourceTree.body("org.example", "A", "\n");
+      String stamped = stamper.stamp(unstamped);
+      archive = LicenseIndexTest.jar(new File(project.getTarget(), "sources.jar"),
+            "org/example/A.java", unstamped,
+            "org/example/B.java", stamped,
+            "README.txt", "Not a source.");
+      expected = new HashMap<String,String>();
+      expected.put("org/example/A.java", stamped);
+      expected.put("org/example/B.java", stamped);
+      expected.put("README.txt", "Not a source.");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   public static Map<String,String> entries(File archive) throws Exception
+   {
+      Map<String,String> result = new HashMap<String,String>();
+      ZipFile zip = new ZipFile(archive);
+      try
+      {
+         for (ZipEntry entry : Collections.list(zip.entries()))
+         {
+            InputStream in = zip.getInputStream(entry);
+            try
+            {
+               ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+               byte[] buffer = new byte[4096];
+               int n;
+               while ((n = in.read(buffer)) > 0)
+               {
+                  bytes.write(buffer, 0, n);
+               }
+               result.put(entry.getName(), new String(bytes.toByteArray(), SourceTree.UTF8));
+            }
+            finally
+            {
+               in.close();
+            }
+         }
+      }
+      finally
+      {
+         zip.close();
+      }
+      return result;
+   }
+
+   @Test
+   public void stampsEntries() throws Exception
+   {
+      project.archive(archive).execute();
+      assertEquals(expected, entries(archive));
+
+      // A stamped archive is left alone.
+      TestProject.age(archive);
+      project.archive(archive).execute();
+      assertFalse(TestProject.isRewritten(archive));
+   }
+
+   @Test
+   public void writesToArchiveOutput() throws Exception
+   {
+      byte[] before = SourceTree.read(archive);
+      File output = new File(project.getTarget(), "stamped.jar");
+      StampArchive goal = project.archive(archive);
+      goal.archiveOutput = output;
+      goal.execute();
+      assertArrayEquals(before, SourceTree.read(archive));
+      assertEquals(expected, entries(output));
+   }
+
+   @Test
+   public void verifyFailsWithoutWriting() throws Exception
+   {
+      byte[] before = SourceTree.read(archive);
+      StampArchive goal = project.archive(archive);
+      goal.verify = Boolean.TRUE;
+      try
+      {
+         goal.execute();
+         fail("The archive has an entry without the notice.");
+      }
+      catch (MojoExecutionException e)
+      {
+         assertEquals("1 entries in sources.jar are missing the copyright notice.", e.getMessage());
+      }
+      assertArrayEquals(before, SourceTree.read(archive));
+
+      project.archive(archive).execute();
+      goal = project.archive(archive);
+      goal.verify = Boolean.TRUE;
+      goal.execute();
+   }
+
+   @Test
+   public void missingArchiveFails() throws Exception
+   {
+      File missing = new File(project.getTarget(), "missing.jar");
+      try
+      {
+         project.archive(missing).execute();
+         fail("There is no archive.");
+      }
+      catch (MojoExecutionException e)
+      {
+         assertEquals("Archive not found : " + missing.getPath(), e.getMessage());
+      }
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            return project.archive(archive);
+         }
+      }));
+      assertEquals(expected, entries(archive));
+      // No execution leaves its temporary archive behind.
+      assertArrayEquals(new String[] { "sources.jar" }, project.getTarget().list());
+   }
+}
@@ -0,0 +1,416 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+/**
+ * A project in a temporary directory, and the goals configured for it the
+ * way Maven would configure them from their default values.
+ * <p>
+ * Sources go in <tt>src/main/java</tt> and outputs in <tt>target</tt>.
+ * Goals are configured by setting their fields, private or not, as Maven
+ * does; {@link #set(Object, String, Object)} changes a single setting.
+ */
+public class TestProject
+{
+   public static final String VERSION = "1.2.3";
+
+   /** A modification time no execution of a goal can produce. */
+   public static final long OLD = 1000000000000L;
+
+   protected final SourceTree tree;
+   protected final File basedir;
+   protected final File target;
+   protected final File src;
+   protected final SourceTree sources;
+   protected final QuietLog log = new QuietLog();
+
+   public TestProject() throws IOException
+   {
+      tree = new SourceTree();
+      basedir = tree.getRoot();
+      target = new File(basedir, "target");
+      src = new File(basedir, "src/main/java");
+      sources = new SourceTree(src);
+   }
+
+   public File getBasedir() { return basedir; }
+
+   public File getTarget() { return target; }
+
+   public File getSourceDirectory() { return src; }
+
+   /** The generator for the files in <tt>src/main/java</tt>. */
+   public SourceTree sources()
+   {
+      return sources;
+   }
+
+   /** Writes <code>count</code> unstamped, stamped and '\r\n' sources. */
+   public List<File> sources(int count) throws IOException
+   {
+      List<File> files = new ArrayList<File>();
+      for (int i = 0; i < count; ++i)
+      {
+         String pkg = sources.packageOf(i);
+         files.add(sources.unstamped(pkg, "Unstamped" + i));
+         files.add(sources.stamped(pkg, "Stamped" + i));
+         files.add(sources.crlf(pkg, "Crlf" + i));
+      }
+      return files;
+   }
+
+   public File file(String path)
+   {
+      return new File(basedir, path);
+   }
+
+   /** Writes a file relative to the base directory. */
+   public File write(String path, String text) throws IOException
+   {
+      return tree.write(path, text);
+   }
+
+   public List<String> getWarnings() { return log.warnings; }
+
+   /** The names of the fingerprint files the goals have saved. */
+   public String[] fingerprints()
+   {
+      String[] names = new File(target, "anc-maven-plugin").list(new FilenameFilter() {
+         public boolean accept(File dir, String name)
+         {
+            return name.endsWith(".fingerprint");
+         }
+      });
+      return names == null ? new String[0] : names;
+   }
+
+   public static String text(File file) throws IOException
+   {
+      return new String(SourceTree.read(file), SourceTree.UTF8);
+   }
+
+   /** Marks a file so a test can tell whether a goal writes it again. */
+   public static void age(File file)
+   {
+      file.setLastModified(OLD);
+   }
+
+   public static boolean isRewritten(File file)
+   {
+      return file.lastModified() != OLD;
+   }
+
+   public void delete()
+   {
+      tree.delete();
+   }
+
+   public WriteVersion version()
+   {
+      WriteVersion goal = new WriteVersion();
+      set(goal, "directory", basedir);
+      set(goal, "version", VERSION);
+      set(goal, "filename", "VERSION");
+      set(goal, "fingerprintDirectory", new File(target, "anc-maven-plugin"));
+      set(goal, "basedir", basedir);
+      set(goal, "force", Boolean.FALSE);
+      return configure(goal);
+   }
+
+   public WriteVersionClass versionClass()
+   {
+      WriteVersionClass goal = new WriteVersionClass();
+      goal.packageName = "org.example";
+      goal.className = "Version";
+      goal.version = VERSION;
+      goal.sourceDirectory = src.getPath();
+      set(goal, "fingerprintDirectory", new File(target, "anc-maven-plugin"));
+      set(goal, "basedir", basedir);
+      set(goal, "force", Boolean.FALSE);
+      return configure(goal);
+   }
+
+   public WriteLicense license()
+   {
+      WriteLicense goal = new WriteLicense();
+      goal.license = file("LICENSE");
+      goal.destination = file("LICENSE.txt");
+      goal.fingerprintDirectory = new File(target, "anc-maven-plugin");
+      goal.basedir = basedir;
+      goal.force = Boolean.FALSE;
+      return configure(goal);
+   }
+
+   public WriteLogbackXml logback()
+   {
+      WriteLogbackXml goal = new WriteLogbackXml();
+      goal.mainOutput = file("src/main/resources/logback.xml");
+      goal.testOutput = file("src/test/resources/logback-test.xml");
+      goal.overwrite = WriteLogbackXml.OVERWRITE_ALWAYS;
+      goal.preset = "console";
+      goal.testPreset = "console";
+      goal.queueSize = 8192;
+      goal.discardingThreshold = 0;
+      goal.neverBlock = Boolean.TRUE;
+      goal.callerData = Boolean.FALSE;
+      goal.logFile = "logs/application.log";
+      goal.maxFileSize = "100MB";
+      goal.maxHistory = 30;
+      goal.totalSizeCap = "5GB";
+      return configure(goal);
+   }
+
+   public InjectMetaInf metaInf()
+   {
+      InjectMetaInf goal = new InjectMetaInf();
+      goal.license = file("LICENSE");
+      goal.noticeFile = file("COPYRIGHT");
+      goal.outputDirectory = new File(target, "classes");
+      goal.includeLicense = Boolean.TRUE;
+      goal.includeCopyright = Boolean.TRUE;
+      return configure(goal);
+   }
+
+   public WriteThirdPartyNotices thirdParty(File repository, List<String> classpath)
+   {
+      WriteThirdPartyNotices goal = new WriteThirdPartyNotices();
+      goal.classpathElements = classpath;
+      goal.localRepository = repository;
+      goal.indexDirectory = new File(target, "anc-license-index");
+      goal.destination = new File(target, "THIRD-PARTY.txt");
+      return configure(goal);
+   }
+
+   public CopyrightInventory inventory()
+   {
+      CopyrightInventory goal = new CopyrightInventory();
+      goal.root = basedir;
+      goal.extensions = "java,groovy";
+      goal.excludes = "target";
+      goal.holder = "The American National Corpus";
+      goal.staleYear = 0;
+      goal.headerBytes = 8192;
+      goal.threads = 0;
+      goal.report = new File(target, "copyright-inventory.tsv");
+      return configure(goal);
+   }
+
+   public WriteCopyright copyright()
+   {
+      return copyright(new WriteCopyright());
+   }
+
+   public StampArchive archive(File archive)
+   {
+      StampArchive goal = copyright(new StampArchive());
+      goal.archive = archive;
+      goal.verify = Boolean.FALSE;
+      return goal;
+   }
+
+   protected <T extends WriteCopyright> T copyright(T goal)
+   {
+      goal.srcDir = src;
+      goal.version = VERSION;
+      goal.writeFile = Boolean.FALSE;
+      goal.replace = Boolean.TRUE;
+      goal.outputFile = new File(target, "COPYRIGHT");
+      goal.noticeFile = file("COPYRIGHT");
+      goal.encoding = "UTF-8";
+      goal.threads = 0;
+      goal.updateYear = Boolean.FALSE;
+      goal.historyCache = new File(target, "anc-maven-plugin/git-years.cache");
+      goal.check = Boolean.FALSE;
+      goal.shard = 0;
+      goal.shardCount = 1;
+      goal.reportDirectory = new File(target, "copyright-report");
+      return configure(goal);
+   }
+
+   public ProjectMetadata metadata()
+   {
+      ProjectMetadata goal = new ProjectMetadata();
+      goal.outputs = "version,version-class,license,copyright,logback,headers";
+      goal.version = VERSION;
+      goal.versionFile = file("VERSION");
+      goal.packageName = "org.example";
+      goal.className = "Version";
+      goal.srcDir = src;
+      goal.license = file("LICENSE");
+      goal.licenseFile = file("LICENSE.txt");
+      goal.noticeFile = file("COPYRIGHT");
+      goal.copyrightFile = new File(target, "COPYRIGHT");
+      goal.replace = Boolean.TRUE;
+      goal.encoding = "UTF-8";
+      goal.historyCache = new File(target, "anc-maven-plugin/git-years.cache");
+      goal.logbackMain = file("src/main/resources/logback.xml");
+      goal.logbackTest = file("src/test/resources/logback-test.xml");
+      goal.logbackPreset = "console";
+      goal.logbackTestPreset = "console";
+      goal.logbackOverwrite = WriteLogbackXml.OVERWRITE_ALWAYS;
+      goal.logbackQueueSize = 8192;
+      goal.logbackDiscardingThreshold = 0;
+      goal.logbackNeverBlock = Boolean.TRUE;
+      goal.logbackCallerData = Boolean.FALSE;
+      goal.logbackFile = "logs/application.log";
+      goal.logbackMaxFileSize = "100MB";
+      goal.logbackMaxHistory = 30;
+      goal.logbackTotalSizeCap = "5GB";
+      goal.threads = 0;
+      return configure(goal);
+   }
+
+   protected <T extends AbstractMojo> T configure(T goal)
+   {
+      goal.setLog(log);
+      return goal;
+   }
+
+   /** Sets a field of a goal, or of one of its superclasses. */
+   public static void set(Object goal, String name, Object value)
+   {
+      for (Class<?> c = goal.getClass(); c != null; c = c.getSuperclass())
+      {
+         try
+         {
+            Field field = c.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(goal, value);
+            return;
+         }
+         catch (NoSuchFieldException e)
+         {
+            // Try the superclass.
+         }
+         catch (IllegalAccessException e)
+         {
+            throw new IllegalStateException(e);
+         }
+      }
+      throw new IllegalArgumentException(goal.getClass().getName() + " has no field " + name);
+   }
+
+   /** Creates a goal; called once for each execution. */
+   public interface Factory
+   {
+      Mojo create() throws Exception;
+   }
+
+   /**
+    * Executes <code>count</code> goals from the factory at the same time,
+    * each on its own thread, and returns what each threw, or null if it
+    * succeeded.
+    */
+   public static List<Throwable> concurrently(int count, final Factory factory) throws Exception
+   {
+      final CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(count);
+      try
+      {
+         List<Future<Void>> futures = new ArrayList<Future<Void>>();
+         for (int i = 0; i < count; ++i)
+         {
+            final Mojo goal = factory.create();
+            futures.add(executor.submit(new Callable<Void>() {
+               public Void call() throws Exception
+               {
+                  start.await();
+                  goal.execute();
+                  return null;
+               }
+            }));
+         }
+         start.countDown();
+         List<Throwable> errors = new ArrayList<Throwable>();
+         for (Future<Void> future : futures)
+         {
+            try
+            {
+               future.get();
+               errors.add(null);
+            }
+            catch (ExecutionException e)
+            {
+               errors.add(e.getCause());
+            }
+         }
+         return errors;
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   /** Fails with the first error from {@link #concurrently(int, Factory)}. */
+   public static void assertNoErrors(List<Throwable> errors)
+   {
+      for (Throwable e : errors)
+      {
+         if (e != null)
+         {
+            fail("A concurrent execution failed: " + e);
+         }
+      }
+   }
+
+   /** Keeps the goals' info messages out of the test output. */
+   protected static class QuietLog extends SystemStreamLog
+   {
+      protected final List<String> warnings = Collections.synchronizedList(new ArrayList<String>());
+
+      @Override
+      public boolean isInfoEnabled() { return false; }
+
+      @Override
+      public void info(CharSequence content) { }
+
+      @Override
+      public void info(CharSequence content, Throwable error) { }
+
+      @Override
+      public void info(Throwable error) { }
+
+      @Override
+      public void warn(CharSequence content)
+      {
+         warnings.add(content.toString());
+      }
+   }
+}
@@ -0,0 +1,169 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.HeaderStamper;
+import org.anc.maven.plugins.header.ShardReport;
+import org.anc.maven.plugins.header.SourceTree;
+import org.anc.maven.plugins.header.StampResult;
+
+public class WriteCopyrightTest
+{
+   protected TestProject project;
+   protected List<File> files;
+   protected Map<File,byte[]> expected;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      project.sources().setDepth(2);
+      files = project.sources(12);
+      files.add(project.sources().stale("org.example", "Stale", "2009-2020"));
+      files.add(project.sources().defaultPackage("Default"));
+      expected = stamped(project, files);
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   /** The content of each file once the bundled notice has been added. */
+   public static Map<File,byte[]> stamped(TestProject project, List<File> files) throws Exception
+   {
+      HeaderStamper stamper = new HeaderStamper(project.copyright().loadNotice());
+      Map<File,byte[]> result = SourceTree.snapshot(files);
+      for (Map.Entry<File,byte[]> entry : result.entrySet())
+      {
+         String source = new String(entry.getValue(), SourceTree.UTF8);
+         String stamped = stamper.stamp(source);
+         if (stamped != null)
+         {
+            entry.setValue(stamped.getBytes(SourceTree.UTF8));
+         }
+      }
+      return result;
+   }
+
+   public static void assertContent(Map<File,byte[]> expected) throws Exception
+   {
+      for (Map.Entry<File,byte[]> entry : expected.entrySet())
+      {
+         assertArrayEquals(entry.getKey().getPath(), entry.getValue(), SourceTree.read(entry.getKey()));
+      }
+   }
+
+   @Test
+   public void stampsSources() throws Exception
+   {
+      project.copyright().execute();
+      assertContent(expected);
+
+      for (File file : files)
+      {
+         TestProject.age(file);
+      }
+      project.copyright().execute();
+      for (File file : files)
+      {
+         assertTrue(file.getPath(), !TestProject.isRewritten(file));
+      }
+   }
+
+   @Test
+   public void checkReportsAndFails() throws Exception
+   {
+      Map<File,byte[]> before = SourceTree.snapshot(files);
+      WriteCopyright goal = project.copyright();
+      goal.check = Boolean.TRUE;
+      try
+      {
+         goal.execute();
+         fail("The check passed with unstamped files.");
+      }
+      catch (MojoExecutionException e)
+      {
+         assertEquals("37 files are missing the copyright notice.", e.getMessage());
+      }
+      assertContent(before);
+      ShardReport report = ShardReport.read(new File(goal.reportDirectory, ShardReport.fileName(0, 1)));
+      assertEquals(37, report.count(StampResult.Status.STAMPED.name()));
+      assertEquals(files.size(), report.getEntries().size());
+
+      project.copyright().execute();
+      goal = project.copyright();
+      goal.check = Boolean.TRUE;
+      goal.execute();
+   }
+
+   @Test
+   public void updatesYears() throws Exception
+   {
+      File stale = files.get(files.size() - 2);
+      WriteCopyright goal = project.copyright();
+      goal.updateYear = Boolean.TRUE;
+      goal.execute();
+      String year = Integer.toString(HeaderStamper.currentYear());
+      assertTrue(TestProject.text(stale).contains("(c) 2009-" + year + " The American"));
+   }
+
+   @Test
+   public void writesNoticeFile() throws Exception
+   {
+      WriteCopyright goal = project.copyright();
+      goal.writeFile = Boolean.TRUE;
+      goal.execute();
+      String sep = System.getProperty("line.separator");
+      StringBuilder notice = new StringBuilder();
+      for (String line : goal.loadNotice())
+      {
+         notice.append(line).append(sep);
+      }
+      assertEquals(notice.toString(), TestProject.text(goal.outputFile));
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(4, new TestProject.Factory() {
+         public Mojo create()
+         {
+            WriteCopyright goal = project.copyright();
+            goal.threads = 4;
+            return goal;
+         }
+      }));
+      assertContent(expected);
+   }
+}
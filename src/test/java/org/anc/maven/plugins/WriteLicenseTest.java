@@ -0,0 +1,106 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.Mojo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class WriteLicenseTest
+{
+   protected TestProject project;
+   protected File output;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      output = project.file("LICENSE.txt");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   /** The bundled license as the goal writes it. */
+   protected byte[] bundled() throws Exception
+   {
+      List<String> lines = BundledResources.lines(WriteLicense.DEFAULT_LICENSE);
+      StringBuilder buffer = new StringBuilder();
+      for (String line : lines)
+      {
+         buffer.append(line).append(System.getProperty("line.separator"));
+      }
+      return buffer.toString().getBytes(SourceTree.UTF8);
+   }
+
+   @Test
+   public void writesBundledLicense() throws Exception
+   {
+      project.license().execute();
+      assertArrayEquals(bundled(), SourceTree.read(output));
+      assertTrue(TestProject.text(output).contains("Apache License"));
+   }
+
+   @Test
+   public void writesProjectLicense() throws Exception
+   {
+      project.write("LICENSE", "Our own license.\n");
+      project.license().execute();
+      assertEquals("Our own license." + System.getProperty("line.separator"), TestProject.text(output));
+   }
+
+   @Test
+   public void skipsWhenUpToDate() throws Exception
+   {
+      project.license().execute();
+      TestProject.age(output);
+      project.license().execute();
+      assertFalse(TestProject.isRewritten(output));
+
+      // A new license text is an input change.
+      project.write("LICENSE", "Our own license.\n");
+      project.license().execute();
+      assertTrue(TestProject.isRewritten(output));
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            return project.license();
+         }
+      }));
+      assertArrayEquals(bundled(), SourceTree.read(output));
+      assertEquals(1, project.fingerprints().length);
+   }
+}
@@ -0,0 +1,146 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class WriteLogbackXmlTest
+{
+   protected TestProject project;
+   protected File main;
+   protected File test;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      main = project.file("src/main/resources/logback.xml");
+      test = project.file("src/test/resources/logback-test.xml");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   @Test
+   public void writesConsoleConfiguration() throws Exception
+   {
+      project.logback().execute();
+      String xml = TestProject.text(main);
+      assertTrue(xml, xml.contains("ch.qos.logback.core.ConsoleAppender"));
+      assertFalse(xml, xml.contains("AsyncAppender"));
+      assertArrayEquals(SourceTree.read(main), SourceTree.read(test));
+   }
+
+   @Test
+   public void testsStayOnTheConsole() throws Exception
+   {
+      WriteLogbackXml goal = project.logback();
+      goal.preset = "rolling";
+      goal.execute();
+      assertTrue(TestProject.text(main).contains("RollingFileAppender"));
+      String xml = TestProject.text(test);
+      assertFalse(xml, xml.contains("RollingFileAppender"));
+      assertFalse(xml, xml.contains("AsyncAppender"));
+
+      goal = project.logback();
+      goal.preset = "console";
+      goal.testPreset = "async";
+      goal.execute();
+      assertFalse(TestProject.text(main).contains("AsyncAppender"));
+      assertTrue(TestProject.text(test).contains("AsyncAppender"));
+   }
+
+   @Test
+   public void neverOverwritesExistingFiles() throws Exception
+   {
+      project.write("src/main/resources/logback.xml", "<configuration/>\n");
+      WriteLogbackXml goal = project.logback();
+      goal.overwrite = WriteLogbackXml.OVERWRITE_NEVER;
+      goal.execute();
+      assertEquals("<configuration/>\n", TestProject.text(main));
+      assertTrue(test.isFile());
+   }
+
+   @Test
+   public void changedOnlyRewritesDifferentFiles() throws Exception
+   {
+      project.logback().execute();
+      TestProject.age(main);
+      TestProject.age(test);
+      WriteLogbackXml goal = project.logback();
+      goal.overwrite = WriteLogbackXml.OVERWRITE_CHANGED;
+      goal.testPreset = "async";
+      goal.execute();
+      assertFalse(TestProject.isRewritten(main));
+      assertTrue(TestProject.isRewritten(test));
+   }
+
+   @Test
+   public void unknownPresetFails() throws Exception
+   {
+      WriteLogbackXml goal = project.logback();
+      goal.testPreset = "fast";
+      try
+      {
+         goal.execute();
+         fail("Accepted an unknown preset.");
+      }
+      catch (MojoFailureException e)
+      {
+         assertEquals("Unknown logback test preset fast", e.getMessage());
+      }
+      assertFalse(main.exists());
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            WriteLogbackXml goal = project.logback();
+            goal.preset = "async";
+            return goal;
+         }
+      }));
+      byte[] main = SourceTree.read(this.main);
+      byte[] test = SourceTree.read(this.test);
+      SourceTree.delete(project.file("src"));
+      WriteLogbackXml goal = project.logback();
+      goal.preset = "async";
+      goal.execute();
+      assertArrayEquals(SourceTree.read(this.main), main);
+      assertArrayEquals(SourceTree.read(this.test), test);
+   }
+}
@@ -0,0 +1,117 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.Mojo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class WriteThirdPartyNoticesTest
+{
+   protected TestProject project;
+   protected File repository;
+   protected List<String> classpath;
+   protected File output;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      repository = project.file("repository");
+      classpath = new ArrayList<String>();
+      // The module's own classes are a directory and are not listed.
+      classpath.add(new File(project.getTarget(), "classes").getPath());
+      classpath.add(jar("org/example/lib/1.0/lib-1.0.jar",
+            "META-INF/LICENSE", "The shared license.\n", "META-INF/NOTICE", "Lib notice."));
+      classpath.add(jar("org/example/other/2.0/other-2.0.jar",
+            "META-INF/LICENSE.txt", "  The shared license.  "));
+      classpath.add(jar("com/example/bare/3.1/bare-3.1.jar", "com/example/Bare.class", "code"));
+      output = new File(project.getTarget(), "THIRD-PARTY.txt");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   protected String jar(String path, String... entries) throws Exception
+   {
+      return LicenseIndexTest.jar(new File(repository, path), entries).getPath();
+   }
+
+   @Test
+   public void groupsArtifactsByText() throws Exception
+   {
+      project.thirdParty(repository, classpath).execute();
+      String rule = "================================================================================";
+      String line = "--------------------------------------------------------------------------------";
+      String expected = "This product includes the following third-party artifacts.\n"
+            + "\n" + rule + "\n"
+            + "org.example:lib:1.0 (META-INF/LICENSE)\n"
+            + "org.example:other:2.0 (META-INF/LICENSE.txt)\n"
+            + line + "\n"
+            + "The shared license.\n"
+            + "\n" + rule + "\n"
+            + "org.example:lib:1.0 (META-INF/NOTICE)\n"
+            + line + "\n"
+            + "Lib notice.\n"
+            + "\n" + rule + "\n"
+            + "No license or notice file was found in:\n"
+            + "com.example:bare:3.1\n";
+      String sep = System.getProperty("line.separator");
+      assertEquals(expected.replace("\n", sep), TestProject.text(output));
+   }
+
+   @Test
+   public void sameOutputFromTheIndex() throws Exception
+   {
+      project.thirdParty(repository, classpath).execute();
+      byte[] first = SourceTree.read(output);
+      assertTrue(new File(project.getTarget(), "anc-license-index").isDirectory());
+      project.thirdParty(repository, classpath).execute();
+      assertArrayEquals(first, SourceTree.read(output));
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      project.thirdParty(repository, classpath).execute();
+      byte[] expected = SourceTree.read(output);
+      SourceTree.delete(project.getTarget());
+
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            return project.thirdParty(repository, classpath);
+         }
+      }));
+      assertArrayEquals(expected, SourceTree.read(output));
+      assertEquals(0, project.getWarnings().size());
+   }
+}
@@ -0,0 +1,118 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.Mojo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class WriteVersionClassTest
+{
+   protected TestProject project;
+   protected File classFile;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      classFile = new File(project.getSourceDirectory(), "org/example/Version.java");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   @Test
+   public void writesClass() throws Exception
+   {
+      project.versionClass().execute();
+      String source = TestProject.text(classFile);
+      assertTrue(source, source.startsWith("package org.example;"));
+      assertTrue(source, source.contains("public final class Version"));
+      assertTrue(source, source.contains(WriteVersionClass.VARIABLE_DECL + " = \"1.2.3\";"));
+   }
+
+   @Test
+   public void skipsWhenUpToDate() throws Exception
+   {
+      project.versionClass().execute();
+      TestProject.age(classFile);
+      project.versionClass().execute();
+      assertFalse(TestProject.isRewritten(classFile));
+
+      WriteVersionClass goal = project.versionClass();
+      goal.version = "2.0";
+      goal.execute();
+      assertTrue(TestProject.text(classFile).contains("\"2.0\""));
+   }
+
+   @Test
+   public void forceRewrites() throws Exception
+   {
+      project.versionClass().execute();
+      byte[] before = SourceTree.read(classFile);
+      classFile.delete();
+      WriteVersionClass goal = project.versionClass();
+      TestProject.set(goal, "force", Boolean.TRUE);
+      goal.execute();
+      assertArrayEquals(before, SourceTree.read(classFile));
+   }
+
+   @Test
+   public void requiresPackage() throws Exception
+   {
+      WriteVersionClass goal = project.versionClass();
+      goal.packageName = null;
+      try
+      {
+         goal.execute();
+         fail("Wrote a class without a package.");
+      }
+      catch (MojoFailureException e)
+      {
+         assertEquals("The packageName has not been specified.", e.getMessage());
+      }
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            return project.versionClass();
+         }
+      }));
+      String expected = project.versionClass().renderJava();
+      assertEquals(expected, TestProject.text(classFile));
+      assertEquals(1, project.fingerprints().length);
+   }
+}
@@ -0,0 +1,120 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.maven.plugin.Mojo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.anc.maven.plugins.header.SourceTree;
+
+public class WriteVersionTest
+{
+   protected TestProject project;
+   protected File versionFile;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      project = new TestProject();
+      versionFile = project.file("VERSION");
+   }
+
+   @After
+   public void tearDown()
+   {
+      project.delete();
+   }
+
+   @Test
+   public void writesVersion() throws Exception
+   {
+      project.version().execute();
+      assertEquals(TestProject.VERSION, TestProject.text(versionFile));
+      assertEquals(1, project.fingerprints().length);
+   }
+
+   @Test
+   public void skipsWhenUpToDate() throws Exception
+   {
+      project.version().execute();
+      TestProject.age(versionFile);
+      project.version().execute();
+      assertFalse(TestProject.isRewritten(versionFile));
+
+      WriteVersion goal = project.version();
+      TestProject.set(goal, "version", "2.0");
+      goal.execute();
+      assertEquals("2.0", TestProject.text(versionFile));
+   }
+
+   @Test
+   public void rewritesChangedOutput() throws Exception
+   {
+      project.version().execute();
+      Files.write(versionFile.toPath(), "edited".getBytes(SourceTree.UTF8));
+      project.version().execute();
+      assertEquals(TestProject.VERSION, TestProject.text(versionFile));
+   }
+
+   @Test
+   public void executionsWithDifferentFilesKeepTheirFingerprints() throws Exception
+   {
+      for (int round = 0; round < 2; ++round)
+      {
+         for (String name : new String[] { "A", "B" })
+         {
+            WriteVersion goal = project.version();
+            TestProject.set(goal, "filename", name);
+            goal.execute();
+            if (round == 0)
+            {
+               TestProject.age(project.file(name));
+            }
+         }
+      }
+      assertFalse(TestProject.isRewritten(project.file("A")));
+      assertFalse(TestProject.isRewritten(project.file("B")));
+      assertEquals(2, project.fingerprints().length);
+   }
+
+   @Test
+   public void concurrentExecutions() throws Exception
+   {
+      TestProject.assertNoErrors(TestProject.concurrently(8, new TestProject.Factory() {
+         public Mojo create()
+         {
+            return project.version();
+         }
+      }));
+      assertEquals(TestProject.VERSION, TestProject.text(versionFile));
+      assertEquals(1, project.fingerprints().length);
+
+      // Whatever the executions raced to record, the next one agrees.
+      project.version().execute();
+      TestProject.age(versionFile);
+      project.version().execute();
+      assertFalse(TestProject.isRewritten(versionFile));
+   }
+}
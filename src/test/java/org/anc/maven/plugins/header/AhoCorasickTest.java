@@ -0,0 +1,91 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AhoCorasickTest
+{
+   protected static int[] match(AhoCorasick automaton, String text)
+   {
+      int[] ends = new int[automaton.size()];
+      automaton.match(ByteBuffer.wrap(text.getBytes(SourceTree.UTF8)), ends);
+      return ends;
+   }
+
+   @Test
+   public void findsOverlappingPatterns() throws Exception
+   {
+      AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers"));
+      int[] ends = new int[4];
+      assertEquals(3, automaton.match(ByteBuffer.wrap("ushers".getBytes(SourceTree.UTF8)), ends));
+      assertArrayEquals(new int[] { 4, 4, -1, 6 }, ends);
+   }
+
+   @Test
+   public void reportsFirstOccurrence() throws Exception
+   {
+      AhoCorasick automaton = new AhoCorasick(Arrays.asList("GPL"));
+      assertArrayEquals(new int[] { 5 }, match(automaton, "a GPL GPL"));
+   }
+
+   @Test
+   public void ignoresAsciiCase() throws Exception
+   {
+      AhoCorasick automaton = new AhoCorasick(Arrays.asList("Copyright", "APACHE"));
+      assertArrayEquals(new int[] { 12, 19 }, match(automaton, "/* COPYRIGHT apache */"));
+   }
+
+   @Test
+   public void matchesUtf8Bytes() throws Exception
+   {
+      AhoCorasick automaton = new AhoCorasick(Arrays.asList("©", "Grüße"));
+      // Non-ASCII letters are not folded.
+      assertArrayEquals(new int[] { 2, -1 }, match(automaton, "© GRÜSSE"));
+      assertArrayEquals(new int[] { -1, 7 }, match(automaton, "Grüße"));
+   }
+
+   @Test
+   public void scansBetweenPositionAndLimit() throws Exception
+   {
+      AhoCorasick automaton = new AhoCorasick(Arrays.asList("ab"));
+      ByteBuffer buffer = ByteBuffer.wrap("ab ab ab".getBytes(SourceTree.UTF8));
+      buffer.position(2);
+      buffer.limit(5);
+      int[] ends = new int[1];
+      assertEquals(1, automaton.match(buffer, ends));
+      assertArrayEquals(new int[] { 5 }, ends);
+      assertEquals(2, buffer.position());
+
+      buffer.limit(4);
+      assertEquals(0, automaton.match(buffer, ends));
+      assertArrayEquals(new int[] { -1 }, ends);
+   }
+
+   @Test
+   public void emptyPatternListMatchesNothing() throws Exception
+   {
+      AhoCorasick automaton = new AhoCorasick(Arrays.<String>asList());
+      assertEquals(0, automaton.match(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), new int[0]));
+   }
+}
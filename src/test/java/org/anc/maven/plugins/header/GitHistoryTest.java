@@ -0,0 +1,170 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitHistoryTest
+{
+   protected SourceTree tree;
+   protected File repo;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+      repo = tree.getRoot();
+      Assume.assumeTrue("git is not available", git("init", "-q") == 0);
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   /** Runs git in the repository with the author and commit dates in <code>year</code>. */
+   protected int git(int year, String... args) throws Exception
+   {
+      List<String> command = new ArrayList<String>();
+      command.add("git");
+      command.add("-c");
+      command.add("user.name=Test");
+      command.add("-c");
+      command.add("user.email=test@example.org");
+      command.addAll(Arrays.asList(args));
+      ProcessBuilder builder = new ProcessBuilder(command);
+      builder.directory(repo);
+      builder.redirectErrorStream(true);
+      Map<String,String> env = builder.environment();
+      String date = year + "-06-01T12:00:00";
+      env.put("GIT_AUTHOR_DATE", date);
+      env.put("GIT_COMMITTER_DATE", date);
+      try
+      {
+         Process process = builder.start();
+         GitHistory.drain(process.getInputStream());
+         return process.waitFor();
+      }
+      catch (IOException e)
+      {
+         return -1;
+      }
+   }
+
+   protected int git(String... args) throws Exception
+   {
+      return git(2026, args);
+   }
+
+   protected void commit(int year, String path, String text) throws Exception
+   {
+      tree.write(path, text);
+      git(year, "add", path);
+      assertEquals(0, git(year, "commit", "-q", "-m", path));
+   }
+
+   protected void move(int year, String from, String to) throws Exception
+   {
+      new File(repo, to).getParentFile().mkdirs();
+      assertEquals(0, git(year, "mv", from, to));
+      assertEquals(0, git(year, "commit", "-q", "-m", "move " + from));
+   }
+
+   @Test
+   public void recordsFirstAndLastYear() throws Exception
+   {
+      commit(2012, "src/A.java", "one\n");
+      commit(2018, "src/A.java", "two\n");
+      commit(2020, "src/B.java", "three\n");
+      GitHistory history = GitHistory.load(new File(repo, "src"), null);
+      assertArrayEquals(new int[] { 2012, 2018 }, history.getYears(new File(repo, "src/A.java")));
+      assertArrayEquals(new int[] { 2020, 2020 }, history.getYears(new File(repo, "src/B.java")));
+      assertNull(history.getYears(new File(repo, "src/New.java")));
+   }
+
+   @Test
+   public void followsRenames() throws Exception
+   {
+      commit(2015, "src/a/Moved.java", "a file with enough content to be detected as a rename\n");
+      commit(2016, "src/a/Moved.java", "a file with enough content to be detected as a rename\nmore\n");
+      move(2024, "src/a/Moved.java", "src/b/Moved.java");
+      // A new file reusing the old path has its own history.
+      commit(2025, "src/a/Moved.java", "something else entirely\n");
+
+      GitHistory history = GitHistory.load(new File(repo, "src"), null);
+      assertArrayEquals(new int[] { 2015, 2024 }, history.getYears(new File(repo, "src/b/Moved.java")));
+      assertArrayEquals(new int[] { 2025, 2025 }, history.getYears(new File(repo, "src/a/Moved.java")));
+   }
+
+   @Test
+   public void followsRenamesSinceCache() throws Exception
+   {
+      File cache = new File(repo, "target/years.cache");
+      commit(2015, "src/Old.java", "a file with enough content to be detected as a rename\n");
+      GitHistory.load(new File(repo, "src"), cache);
+      move(2024, "src/Old.java", "src/New.java");
+
+      GitHistory history = GitHistory.load(new File(repo, "src"), cache);
+      assertArrayEquals(new int[] { 2015, 2024 }, history.getYears(new File(repo, "src/New.java")));
+      assertNull(history.getYears(new File(repo, "src/Old.java")));
+   }
+
+   @Test
+   public void emptyOutsideWorkTree() throws Exception
+   {
+      SourceTree plain = new SourceTree();
+      try
+      {
+         repo = plain.getRoot();
+         Assume.assumeTrue("the temporary directory is in a work tree", git("rev-parse") != 0);
+         File cache = new File(repo, "years.cache");
+         GitHistory history = GitHistory.load(repo, cache);
+         assertNull(history.getHead());
+         assertEquals(0, history.size());
+         assertNull(history.getYears(new File(repo, "A.java")));
+         assertFalse(cache.exists());
+      }
+      finally
+      {
+         plain.delete();
+      }
+   }
+
+   @Test
+   public void emptyWithoutCommits() throws Exception
+   {
+      GitHistory history = GitHistory.load(repo, null);
+      assertNull(history.getHead());
+      assertEquals(0, history.size());
+   }
+}
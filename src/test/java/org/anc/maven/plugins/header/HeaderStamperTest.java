@@ -0,0 +1,198 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeaderStamperTest
+{
+   protected SourceTree tree;
+   protected HeaderStamper stamper;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+      stamper = new HeaderStamper(SourceTree.NOTICE);
+      stamper.setCharset(SourceTree.UTF8);
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   @Test
+   public void stampsByteForByte() throws Exception
+   {
+      File file = tree.unstamped("a.b", "A");
+      assertEquals(StampResult.Status.STAMPED, stamper.process(file).getStatus());
+      String expected = SourceTree.header(SourceTree.NOTICE, "\n") + SourceTree.body("a.b", "A", "\n");
+      assertArrayEquals(expected.getBytes(SourceTree.UTF8), SourceTree.read(file));
+   }
+
+   @Test
+   public void keepsCrlfLineEndings() throws Exception
+   {
+      File file = tree.crlf("a.b", "Crlf");
+      assertEquals(StampResult.Status.STAMPED, stamper.process(file).getStatus());
+      String expected = SourceTree.header(SourceTree.NOTICE, "\r\n") + SourceTree.body("a.b", "Crlf", "\r\n");
+      assertArrayEquals(expected.getBytes(SourceTree.UTF8), SourceTree.read(file));
+      assertEquals(StampResult.Status.CURRENT, stamper.process(file).getStatus());
+   }
+
+   @Test
+   public void secondPassDoesNotWrite() throws Exception
+   {
+      File file = tree.unstamped("a.b", "A");
+      stamper.process(file);
+      byte[] stamped = SourceTree.read(file);
+      file.setLastModified(1000000000000L);
+
+      assertEquals(StampResult.Status.CURRENT, stamper.process(file).getStatus());
+      assertArrayEquals(stamped, SourceTree.read(file));
+      assertEquals(1000000000000L, file.lastModified());
+   }
+
+   @Test
+   public void skipsDefaultPackage() throws Exception
+   {
+      File file = tree.defaultPackage("Default");
+      byte[] before = SourceTree.read(file);
+      assertEquals(StampResult.Status.SKIPPED, stamper.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void failsOnInvalidEncoding() throws Exception
+   {
+      File file = tree.latin1("a.b", "Latin");
+      byte[] before = SourceTree.read(file);
+      StampResult result = stamper.process(file);
+      assertEquals(StampResult.Status.FAILED, result.getStatus());
+      assertEquals("Not valid UTF-8", result.getMessage());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void stampsInDeclaredEncoding() throws Exception
+   {
+      File file = tree.latin1("a.b", "Latin");
+      String body = new String(SourceTree.read(file), SourceTree.LATIN1);
+      body = body.substring(HeaderStamper.findPackage(body));
+      stamper.setCharset(SourceTree.LATIN1);
+      assertEquals(StampResult.Status.STAMPED, stamper.process(file).getStatus());
+      String expected = SourceTree.header(SourceTree.NOTICE, "\n") + body;
+      assertArrayEquals(expected.getBytes(SourceTree.LATIN1), SourceTree.read(file));
+   }
+
+   @Test
+   public void ignoresTrailingBlankLinesOfNotice() throws Exception
+   {
+      List<String> notice = new ArrayList<String>(SourceTree.NOTICE);
+      notice.add("");
+      notice.add("   ");
+      File file = tree.stamped("a.b", "A");
+      byte[] before = SourceTree.read(file);
+      HeaderStamper padded = new HeaderStamper(notice);
+      padded.setCharset(SourceTree.UTF8);
+      assertEquals(StampResult.Status.CURRENT, padded.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void keepsOtherNoticesWhenNotReplacing() throws Exception
+   {
+      File file = tree.stale("a.b", "A", "2009-2020");
+      byte[] before = SourceTree.read(file);
+      stamper.setReplace(false);
+      assertEquals(StampResult.Status.KEPT, stamper.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void checkDoesNotWrite() throws Exception
+   {
+      File file = tree.unstamped("a.b", "A");
+      byte[] before = SourceTree.read(file);
+      stamper.setCheck(true);
+      assertEquals(StampResult.Status.STAMPED, stamper.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void stampsLargeFile() throws Exception
+   {
+      File file = tree.large("a.b", "Large", 50000);
+      String source = new String(SourceTree.read(file), SourceTree.UTF8);
+      String expected = SourceTree.header(SourceTree.NOTICE, "\n")
+            + source.substring(HeaderStamper.findPackage(source));
+      assertEquals(StampResult.Status.STAMPED, stamper.process(file).getStatus());
+      assertArrayEquals(expected.getBytes(SourceTree.UTF8), SourceTree.read(file));
+   }
+
+   /**
+    * Stamps a generated tree on several threads, then checks that a second
+    * pass finds nothing to do and leaves every file as the first pass did.
+    */
+   @Test
+   public void treeIsIdempotent() throws Exception
+   {
+      List<File> files = tree.generate(50);
+      stamper.setThreads(4);
+      List<StampResult> first = stamper.process(files);
+      assertEquals(files.size(), first.size());
+      int[] counts = count(first);
+      assertEquals(155, counts[StampResult.Status.STAMPED.ordinal()]);
+      assertEquals(50, counts[StampResult.Status.CURRENT.ordinal()]);
+      assertEquals(50, counts[StampResult.Status.SKIPPED.ordinal()]);
+      assertEquals(50, counts[StampResult.Status.FAILED.ordinal()]);
+
+      Map<File,byte[]> stamped = SourceTree.snapshot(files);
+      List<StampResult> second = stamper.process(files);
+      counts = count(second);
+      assertEquals(0, counts[StampResult.Status.STAMPED.ordinal()]);
+      assertEquals(205, counts[StampResult.Status.CURRENT.ordinal()]);
+      for (File file : files)
+      {
+         assertTrue(file.getPath(), Arrays.equals(stamped.get(file), SourceTree.read(file)));
+      }
+   }
+
+   protected static int[] count(List<StampResult> results)
+   {
+      int[] counts = new int[StampResult.Status.values().length];
+      for (StampResult result : results)
+      {
+         ++counts[result.getStatus().ordinal()];
+      }
+      return counts;
+   }
+}
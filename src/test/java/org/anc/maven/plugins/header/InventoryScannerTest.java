@@ -0,0 +1,141 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InventoryScannerTest
+{
+   protected SourceTree tree;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   protected static InventoryScanner.Entry scan(InventoryScanner scanner, File file)
+   {
+      return scanner.scan(Collections.singletonList(file)).get(0);
+   }
+
+   @Test
+   public void reportsPatternsAndCopyrightLine() throws Exception
+   {
+      File file = tree.write("A.java",
+            "/*\n * Licensed under the Apache License\n * Copyright 2020 Acme\r\n */\nclass A {}\n");
+      InventoryScanner scanner = new InventoryScanner(Arrays.asList("GPL", "Apache License"));
+      InventoryScanner.Entry entry = scan(scanner, file);
+      // The implicit Copyright pattern is not reported as a match.
+      assertEquals(Arrays.asList("Apache License"), entry.getMatches());
+      assertEquals("2020 Acme", entry.getCopyright());
+      assertNull(entry.getError());
+   }
+
+   @Test
+   public void explicitCopyrightIsReported() throws Exception
+   {
+      File file = tree.write("A.java", "// copyright Acme\n");
+      InventoryScanner scanner = new InventoryScanner(Arrays.asList("Copyright"));
+      InventoryScanner.Entry entry = scan(scanner, file);
+      assertEquals(Arrays.asList("Copyright"), entry.getMatches());
+      assertEquals("Acme", entry.getCopyright());
+   }
+
+   @Test
+   public void onlyScansHeaderBytes() throws Exception
+   {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 100; ++i)
+      {
+         text.append("// filler line\n");
+      }
+      File file = tree.write("A.java", text + "// Copyright Late\n");
+      InventoryScanner scanner = new InventoryScanner(Collections.<String>emptyList());
+      scanner.setHeaderBytes(1024);
+      assertNull(scan(scanner, file).getCopyright());
+      scanner.setHeaderBytes(8192);
+      assertEquals("Late", scan(scanner, file).getCopyright());
+   }
+
+   /** Regions of at least MAP_THRESHOLD bytes are mapped rather than read. */
+   @Test
+   public void scansMappedRegion() throws Exception
+   {
+      File file = tree.large("a.b", "Large", 5000);
+      assertEquals(true, file.length() > 2 * InventoryScanner.MAP_THRESHOLD);
+      byte[] tail = "// GPL at the end\n".getBytes(SourceTree.UTF8);
+      byte[] bytes = SourceTree.read(file);
+      byte[] all = Arrays.copyOf(bytes, bytes.length + tail.length);
+      System.arraycopy(tail, 0, all, bytes.length, tail.length);
+      tree.write("a/b/Large.java", all);
+
+      InventoryScanner scanner = new InventoryScanner(Arrays.asList("GPL", "field4"));
+      scanner.setHeaderBytes(2 * InventoryScanner.MAP_THRESHOLD);
+      assertEquals(Arrays.asList("field4"), scan(scanner, file).getMatches());
+      scanner.setHeaderBytes(Integer.MAX_VALUE);
+      assertEquals(Arrays.asList("GPL", "field4"), scan(scanner, file).getMatches());
+   }
+
+   @Test
+   public void missingFileHasError() throws Exception
+   {
+      InventoryScanner scanner = new InventoryScanner(Arrays.asList("GPL"));
+      InventoryScanner.Entry entry = scan(scanner, new File(tree.getRoot(), "Missing.java"));
+      assertNotNull(entry.getError());
+      assertEquals(0, entry.getMatches().size());
+   }
+
+   /** Entries come back in the order of the files whatever the thread count. */
+   @Test
+   public void keepsFileOrder() throws Exception
+   {
+      List<File> files = new ArrayList<File>();
+      for (int i = 0; i < 200; ++i)
+      {
+         files.add(tree.write("F" + i + ".java", i % 3 == 0 ? "// GPL " + i + "\n" : "// none\n"));
+      }
+      InventoryScanner scanner = new InventoryScanner(Arrays.asList("GPL"));
+      scanner.setThreads(4);
+      List<InventoryScanner.Entry> entries = scanner.scan(files);
+      assertEquals(files.size(), entries.size());
+      for (int i = 0; i < files.size(); ++i)
+      {
+         InventoryScanner.Entry entry = entries.get(i);
+         assertEquals(files.get(i), entry.getFile());
+         assertEquals(i % 3 == 0 ? Arrays.asList("GPL") : Collections.<String>emptyList(), entry.getMatches());
+      }
+   }
+}
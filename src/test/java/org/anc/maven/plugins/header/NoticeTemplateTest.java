@@ -0,0 +1,85 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class NoticeTemplateTest
+{
+   @Test
+   public void rendersCurrentYear() throws Exception
+   {
+      NoticeTemplate template = NoticeTemplate.load(new StringReader(
+            "/*-\n * Copyright %YEAR% The American National Corpus\n */\n"));
+      assertFalse(template.isPerFile());
+      assertEquals(Arrays.asList("/*-", " * Copyright 2026 The American National Corpus", " */"),
+            template.render(2026));
+   }
+
+   @Test
+   public void rendersFileYears() throws Exception
+   {
+      NoticeTemplate template = new NoticeTemplate(Arrays.asList(
+            "%FIRST_YEAR%..%LAST_YEAR%", "(c) %YEARS%, %YEAR%", "%YEARS%%YEARS%", ""));
+      assertTrue(template.isPerFile());
+      assertEquals(Arrays.asList("2009..2020", "(c) 2009-2020, 2026", "2009-20202009-2020", ""),
+            template.render(2026, 2009, 2020));
+      assertEquals(Arrays.asList("2020..2020", "(c) 2020, 2026", "20202020", ""),
+            template.render(2026, 2020, 2020));
+   }
+
+   @Test
+   public void leavesUnknownVariablesAlone() throws Exception
+   {
+      NoticeTemplate template = new NoticeTemplate(Arrays.asList("%VERSION% %YEAR% 100%"));
+      assertEquals(Arrays.asList("%VERSION% 2026 100%"), template.render(2026));
+   }
+
+   @Test
+   public void providerUsesHistory() throws Exception
+   {
+      SourceTree tree = new SourceTree();
+      try
+      {
+         GitHistory history = new GitHistory(tree.getRoot());
+         history.years.put("a/A.java", new int[] { 2009, 2020 });
+         history.years.put("a/B.java", new int[] { 2009, 2020 });
+         NoticeTemplate template = new NoticeTemplate(Arrays.asList("Copyright %YEARS%"));
+         HeaderStamper.NoticeProvider provider = template.provider(history, 2026);
+
+         List<String> a = provider.notice(new File(tree.getRoot(), "a/A.java"));
+         assertEquals(Arrays.asList("Copyright 2009-2020"), a);
+         // Files with the same years share the rendered notice.
+         assertSame(a, provider.notice(new File(tree.getRoot(), "a/B.java")));
+         assertEquals(Arrays.asList("Copyright 2026"), provider.notice(new File(tree.getRoot(), "a/New.java")));
+      }
+      finally
+      {
+         tree.delete();
+      }
+   }
+}
@@ -0,0 +1,176 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Stamps, updates and scans a generated tree whose size and shape come from
+ * system properties, and fails if the heap the work keeps alive goes over a
+ * ceiling.
+ * <p>
+ * <tt>anc.scale.count</tt> is the number of groups of files (see
+ * {@link SourceTree#generate(int)}), <tt>anc.scale.depth</tt> and
+ * <tt>anc.scale.fanOut</tt> the shape of the package tree and
+ * <tt>anc.scale.heapMB</tt> the ceiling. The defaults keep the test quick;
+ * the <tt>stress</tt> profile runs it on a larger tree.
+ * <p>
+ * Two figures are measured against the ceiling: the largest heap in use
+ * right after a collection while the work runs, sampled from the heap
+ * memory pools, and the heap still in use after the work is done and the
+ * collector has run. Both leave out garbage, so they do not depend on
+ * when the collector happens to run.
+ */
+public class ScaleTest
+{
+   protected static final int COUNT = Integer.getInteger("anc.scale.count", 100);
+   protected static final int DEPTH = Integer.getInteger("anc.scale.depth", 3);
+   protected static final int FAN_OUT = Integer.getInteger("anc.scale.fanOut", 4);
+   protected static final long CEILING = Integer.getInteger("anc.scale.heapMB", 64) * 1024L * 1024L;
+
+   protected SourceTree tree;
+   protected List<File> files;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+      tree.setDepth(DEPTH);
+      tree.setFanOut(FAN_OUT);
+      files = tree.generate(COUNT);
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   /** The heap in use after the most recent collection of each heap pool. */
+   protected static long collectedHeap()
+   {
+      long used = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      {
+         MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+         if (usage != null)
+         {
+            used += usage.getUsed();
+         }
+      }
+      return used;
+   }
+
+   protected static long retainedHeap()
+   {
+      for (int i = 0; i < 3; ++i)
+      {
+         System.gc();
+      }
+      Runtime runtime = Runtime.getRuntime();
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+
+   /** Records the largest value of {@link #collectedHeap()} until stopped. */
+   protected static class Sampler extends Thread
+   {
+      protected volatile boolean running = true;
+      protected long peak;
+
+      public Sampler()
+      {
+         setDaemon(true);
+      }
+
+      @Override
+      public void run()
+      {
+         while (running)
+         {
+            peak = Math.max(peak, collectedHeap());
+            try
+            {
+               Thread.sleep(5);
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+         }
+      }
+
+      public long finish() throws InterruptedException
+      {
+         running = false;
+         join();
+         return Math.max(peak, collectedHeap());
+      }
+   }
+
+   protected static void assertUnderCeiling(String what, long bytes)
+   {
+      assertTrue(what + " used " + (bytes >> 20) + "MB of heap, over the "
+            + (CEILING >> 20) + "MB ceiling", bytes <= CEILING);
+   }
+
+   @Test
+   public void staysUnderHeapCeiling() throws Exception
+   {
+      long baseline = retainedHeap();
+      long collected = collectedHeap();
+      Sampler sampler = new Sampler();
+      sampler.start();
+
+      HeaderStamper stamper = new HeaderStamper(SourceTree.NOTICE);
+      stamper.setCharset(SourceTree.UTF8);
+      stamper.setThreads(4);
+      List<StampResult> stamped = stamper.process(files);
+
+      YearUpdater updater = new YearUpdater(2026);
+      updater.setThreads(4);
+      List<StampResult> updated = updater.process(files);
+
+      InventoryScanner scanner = new InventoryScanner(Arrays.asList("GPL", "Apache License"));
+      scanner.setThreads(4);
+      List<InventoryScanner.Entry> entries = scanner.scan(files);
+
+      long peak = sampler.finish() - collected;
+      long retained = retainedHeap() - baseline;
+      assertEquals(files.size(), stamped.size());
+      assertEquals(files.size(), updated.size());
+      assertEquals(files.size(), entries.size());
+      assertUnderCeiling("Stamping " + files.size() + " files", peak);
+      assertUnderCeiling("The results for " + files.size() + " files", retained);
+
+      // Only the ISO-8859-1 files could not be stamped.
+      assertEquals(COUNT, HeaderStamperTest.count(stamped)[StampResult.Status.FAILED.ordinal()]);
+      assertEquals(0, HeaderStamperTest.count(stamper.process(files))[StampResult.Status.STAMPED.ordinal()]);
+   }
+}
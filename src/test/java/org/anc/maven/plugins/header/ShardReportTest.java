@@ -0,0 +1,133 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardReportTest
+{
+   protected SourceTree tree;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   @Test
+   public void shardsCoverEveryFileOnce() throws Exception
+   {
+      List<File> files = tree.generate(30);
+      Set<File> seen = new HashSet<File>();
+      int total = 0;
+      for (int shard = 0; shard < 4; ++shard)
+      {
+         List<File> selected = ShardReport.select(tree.getRoot(), files, shard, 4);
+         total += selected.size();
+         seen.addAll(selected);
+      }
+      assertEquals(files.size(), total);
+      assertEquals(new HashSet<File>(files), seen);
+   }
+
+   @Test
+   public void shardDependsOnlyOnRelativePath() throws Exception
+   {
+      File a = new File("/one/src/org/x/A.java");
+      File b = new File("/two/checkout/src/org/x/A.java");
+      assertEquals("org/x/A.java", ShardReport.relativePath(new File("/one/src"), a));
+      assertEquals(ShardReport.shardOf(ShardReport.relativePath(new File("/one/src"), a), 7),
+            ShardReport.shardOf(ShardReport.relativePath(new File("/two/checkout/src"), b), 7));
+   }
+
+   @Test
+   public void writeAndReadRoundTrip() throws Exception
+   {
+      HeaderStamper stamper = new HeaderStamper(SourceTree.NOTICE);
+      stamper.setCharset(SourceTree.UTF8);
+      stamper.setCheck(true);
+      List<StampResult> results = stamper.process(tree.generate(5));
+
+      ShardReport report = new ShardReport(1, 3, "check");
+      report.addAll(tree.getRoot(), results);
+      report.add("FAILED", "zz/Odd.java", "tab\there\nand newline");
+      File file = new File(tree.getRoot(), "report/" + ShardReport.fileName(1, 3));
+      report.write(file);
+      byte[] written = SourceTree.read(file);
+
+      ShardReport read = ShardReport.read(file);
+      assertEquals(1, read.getShard());
+      assertEquals(3, read.getCount());
+      assertEquals("check", read.getMode());
+      assertEquals(results.size() + 1, read.getEntries().size());
+      assertEquals(report.count("STAMPED"), read.count("STAMPED"));
+      assertEquals(report.count("FAILED"), read.count("FAILED"));
+      String previous = "";
+      for (String[] entry : read.getEntries())
+      {
+         assertTrue(entry[1], previous.compareTo(entry[1]) < 0);
+         previous = entry[1];
+         if (entry[1].equals("zz/Odd.java"))
+         {
+            assertEquals("tab here and newline", entry[2]);
+         }
+         else if (!entry[0].equals("FAILED"))
+         {
+            assertNull(entry[2]);
+         }
+      }
+
+      // Writing what was read reproduces the report exactly.
+      read.write(file);
+      assertArrayEquals(written, SourceTree.read(file));
+   }
+
+   @Test
+   public void rejectsOtherFiles() throws Exception
+   {
+      File file = tree.write("not-a-report.txt", "STAMPED\ta/B.java\n");
+      try
+      {
+         ShardReport.read(file);
+         fail("Read a file without a header.");
+      }
+      catch (IOException e)
+      {
+         assertTrue(e.getMessage().startsWith("Not a shard report"));
+      }
+   }
+}
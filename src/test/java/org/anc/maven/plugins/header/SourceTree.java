@@ -0,0 +1,238 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a tree of synthetic source files in a temporary directory for
+ * the header tests: files without a notice, with the current notice, with
+ * an out of date year, without a package statement, with '\r\n' line
+ * endings, in ISO-8859-1 rather than UTF-8, and large files.
+ * <p>
+ * The packages form a tree <code>depth</code> levels deep below
+ * <tt>org.example</tt> with <code>fanOut</code> packages at each level, so
+ * the size and the shape of the tree can be set independently.
+ */
+public class SourceTree
+{
+   public static final Charset UTF8 = Charset.forName("UTF-8");
+   public static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+   public static final List<String> NOTICE = Arrays.asList(
+         "/*-",
+         " * Copyright 2026 The American National Corpus",
+         " */");
+
+   protected File root;
+   protected int depth = 1;
+   protected int fanOut = 7;
+   protected int largeEvery = 10;
+   protected int largeLines = 20000;
+
+   public SourceTree() throws IOException
+   {
+      root = Files.createTempDirectory("anc-header").toFile();
+   }
+
+   /** Generates files below <code>root</code>, which is created if needed. */
+   public SourceTree(File root)
+   {
+      this.root = root;
+      root.mkdirs();
+   }
+
+   public File getRoot() { return root; }
+
+   /** The number of package levels below <tt>org.example</tt>. */
+   public void setDepth(int depth) { this.depth = depth; }
+
+   /** The number of packages at each level. */
+   public void setFanOut(int fanOut) { this.fanOut = fanOut; }
+
+   /** Every <code>largeEvery</code>th group has a large file; 0 for none. */
+   public void setLargeEvery(int largeEvery) { this.largeEvery = largeEvery; }
+
+   /** The number of lines in a large file. */
+   public void setLargeLines(int largeLines) { this.largeLines = largeLines; }
+
+   /** The text of a class in <code>pkg</code> from its package statement on. */
+   public static String body(String pkg, String name, String eol)
+   {
+      return "package " + pkg + ";" + eol
+            + eol
+            + "public class " + name + eol
+            + "{" + eol
+            + "   // Grüße, © and € survive the rewrite." + eol
+            + "}" + eol;
+   }
+
+   /** The notice as it appears in a stamped file. */
+   public static String header(List<String> notice, String eol)
+   {
+      StringBuilder buffer = new StringBuilder();
+      for (String line : notice)
+      {
+         buffer.append(line).append(eol);
+      }
+      return buffer.toString();
+   }
+
+   public File write(String path, byte[] bytes) throws IOException
+   {
+      File file = new File(root, path);
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), bytes);
+      return file;
+   }
+
+   public File write(String path, String text) throws IOException
+   {
+      return write(path, text.getBytes(UTF8));
+   }
+
+   public File unstamped(String pkg, String name) throws IOException
+   {
+      return write(path(pkg, name), "// An old header.\n\n" + body(pkg, name, "\n"));
+   }
+
+   public File stamped(String pkg, String name) throws IOException
+   {
+      return write(path(pkg, name), header(NOTICE, "\n") + body(pkg, name, "\n"));
+   }
+
+   /** A file whose notice names <code>years</code>, e.g. <tt>2009-2020</tt>. */
+   public File stale(String pkg, String name, String years) throws IOException
+   {
+      return write(path(pkg, name), "/*\n * Copyright (c) " + years
+            + " The American National Corpus\n */\n" + body(pkg, name, "\n"));
+   }
+
+   public File defaultPackage(String name) throws IOException
+   {
+      return write(name + ".java", "public class " + name + "\n{\n}\n");
+   }
+
+   public File crlf(String pkg, String name) throws IOException
+   {
+      return write(path(pkg, name), "// An old header.\r\n\r\n" + body(pkg, name, "\r\n"));
+   }
+
+   /** A file that is valid ISO-8859-1 but not valid UTF-8. */
+   public File latin1(String pkg, String name) throws IOException
+   {
+      String text = "// Café\n" + body(pkg, name, "\n").replace("€", "E");
+      return write(path(pkg, name), text.getBytes(LATIN1));
+   }
+
+   /** An unstamped file of roughly <code>lines</code> lines. */
+   public File large(String pkg, String name, int lines) throws IOException
+   {
+      StringBuilder buffer = new StringBuilder("// An old header.\n");
+      buffer.append("package ").append(pkg).append(";\n\npublic class ").append(name).append("\n{\n");
+      for (int i = 0; i < lines; ++i)
+      {
+         buffer.append("   int field").append(i).append(" = ").append(i).append("; // éè\n");
+      }
+      buffer.append("}\n");
+      return write(path(pkg, name), buffer.toString());
+   }
+
+   /**
+    * Generates <code>count</code> files of every kind, spread over the
+    * package tree, and returns them.
+    */
+   public List<File> generate(int count) throws IOException
+   {
+      List<File> files = new ArrayList<File>();
+      for (int i = 0; i < count; ++i)
+      {
+         String pkg = packageOf(i);
+         files.add(unstamped(pkg, "Unstamped" + i));
+         files.add(stamped(pkg, "Stamped" + i));
+         files.add(stale(pkg, "Stale" + i, i % 2 == 0 ? "2009-2020" : "2020"));
+         files.add(defaultPackage("Default" + i));
+         files.add(crlf(pkg, "Crlf" + i));
+         files.add(latin1(pkg, "Latin" + i));
+         if (largeEvery > 0 && i % largeEvery == 0)
+         {
+            files.add(large(pkg, "Large" + i, largeLines));
+         }
+      }
+      return files;
+   }
+
+   /** The package of the <code>i</code>th group of files. */
+   public String packageOf(int i)
+   {
+      StringBuilder pkg = new StringBuilder("org.example");
+      for (int level = 0; level < depth; ++level)
+      {
+         pkg.append(".p").append(i % fanOut);
+         i /= fanOut;
+      }
+      return pkg.toString();
+   }
+
+   /** Returns the content of every file. */
+   public static Map<File,byte[]> snapshot(List<File> files) throws IOException
+   {
+      Map<File,byte[]> result = new HashMap<File,byte[]>();
+      for (File file : files)
+      {
+         result.put(file, read(file));
+      }
+      return result;
+   }
+
+   public static byte[] read(File file) throws IOException
+   {
+      return Files.readAllBytes(file.toPath());
+   }
+
+   public void delete()
+   {
+      delete(root);
+   }
+
+   /** Deletes a file, or a directory and everything in it. */
+   public static void delete(File file)
+   {
+      File[] children = file.listFiles();
+      if (children != null)
+      {
+         for (File child : children)
+         {
+            delete(child);
+         }
+      }
+      file.setWritable(true);
+      file.delete();
+   }
+
+   protected static String path(String pkg, String name)
+   {
+      return pkg.replace('.', '/') + "/" + name + ".java";
+   }
+}
@@ -0,0 +1,202 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class YearUpdaterTest
+{
+   protected SourceTree tree;
+   protected YearUpdater updater;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+      updater = new YearUpdater(2026);
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   @Test
+   public void patchesRangeInPlace() throws Exception
+   {
+      File file = tree.stale("a.b", "A", "2009-2020");
+      String before = new String(SourceTree.read(file), SourceTree.UTF8);
+      Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+
+      assertEquals(StampResult.Status.STAMPED, updater.process(file).getStatus());
+      byte[] expected = before.replace("2009-2020", "2009-2026").getBytes(SourceTree.UTF8);
+      assertArrayEquals(expected, SourceTree.read(file));
+      // Patched in place, not replaced.
+      assertEquals(key, Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+   }
+
+   @Test
+   public void extendsSingleYear() throws Exception
+   {
+      File file = tree.stale("a.b", "A", "2020");
+      String before = new String(SourceTree.read(file), SourceTree.UTF8);
+      assertEquals(StampResult.Status.STAMPED, updater.process(file).getStatus());
+      byte[] expected = before.replace("(c) 2020 ", "(c) 2020-2026 ").getBytes(SourceTree.UTF8);
+      assertArrayEquals(expected, SourceTree.read(file));
+   }
+
+   @Test
+   public void keepsPermissions() throws Exception
+   {
+      File file = tree.stale("a.b", "A", "2020");
+      Assume.assumeTrue(Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) != null);
+      Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+      Files.setPosixFilePermissions(file.toPath(), permissions);
+
+      assertEquals(StampResult.Status.STAMPED, updater.process(file).getStatus());
+      assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+   }
+
+   @Test
+   public void leavesCurrentYearAlone() throws Exception
+   {
+      File range = tree.stale("a.b", "Range", "2009-2026");
+      File single = tree.stale("a.b", "Single", "2026");
+      Map<File,byte[]> before = SourceTree.snapshot(Arrays.asList(range, single));
+      assertEquals(StampResult.Status.CURRENT, updater.process(range).getStatus());
+      assertEquals(StampResult.Status.CURRENT, updater.process(single).getStatus());
+      assertArrayEquals(before.get(range), SourceTree.read(range));
+      assertArrayEquals(before.get(single), SourceTree.read(single));
+   }
+
+   @Test
+   public void readOnlyCurrentFileIsNotAnError() throws Exception
+   {
+      File file = tree.stale("a.b", "A", "2009-2026");
+      file.setWritable(false);
+      assertEquals(StampResult.Status.CURRENT, updater.process(file).getStatus());
+   }
+
+   @Test
+   public void readOnlyStaleFileFails() throws Exception
+   {
+      File file = tree.stale("a.b", "A", "2009-2020");
+      byte[] before = SourceTree.read(file);
+      file.setWritable(false);
+      // The superuser can write to any file.
+      Assume.assumeTrue(!file.canWrite());
+      assertEquals(StampResult.Status.FAILED, updater.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void checkDoesNotWrite() throws Exception
+   {
+      File file = tree.stale("a.b", "A", "2020");
+      byte[] before = SourceTree.read(file);
+      updater.setCheck(true);
+      assertEquals(StampResult.Status.STAMPED, updater.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void onlyUpdatesHolder() throws Exception
+   {
+      File file = tree.write("a/b/Other.java",
+            "/* Copyright 2010 Someone Else */\n" + SourceTree.body("a.b", "Other", "\n"));
+      byte[] before = SourceTree.read(file);
+      updater.setHolder("The American National Corpus");
+      assertEquals(StampResult.Status.SKIPPED, updater.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void ignoresYearsAfterPackage() throws Exception
+   {
+      File file = tree.write("a/b/Late.java",
+            "// No notice.\n" + SourceTree.body("a.b", "Late", "\n") + "// Copyright 2001\n");
+      assertEquals(StampResult.Status.SKIPPED, updater.process(file).getStatus());
+   }
+
+   @Test
+   public void leavesDefaultPackageCodeAlone() throws Exception
+   {
+      File file = tree.write("Constants.java",
+            "public class Constants\n{\n   String OWNER = \"Copyright 2020 Acme\";\n}\n");
+      byte[] before = SourceTree.read(file);
+      assertEquals(StampResult.Status.SKIPPED, updater.process(file).getStatus());
+      assertArrayEquals(before, SourceTree.read(file));
+   }
+
+   @Test
+   public void searchesOnlyLeadingCommentsBeyondBuffer() throws Exception
+   {
+      StringBuilder code = new StringBuilder("/* Copyright 2020 Acme */\npublic class Big\n{\n");
+      for (int i = 0; i < 2000; ++i)
+      {
+         code.append("   String s").append(i).append(" = \"Copyright 2019 Acme\";\n");
+      }
+      code.append("}\n");
+      File file = tree.write("Big.java", code.toString());
+      updater.setHeaderBytes(1024);
+      assertEquals(StampResult.Status.STAMPED, updater.process(file).getStatus());
+      String expected = code.toString().replace("/* Copyright 2020 Acme", "/* Copyright 2020-2026 Acme");
+      assertArrayEquals(expected.getBytes(SourceTree.UTF8), SourceTree.read(file));
+   }
+
+   /**
+    * Updates a generated tree on several threads, then checks that a second
+    * pass finds nothing to do and leaves every file as the first pass did.
+    */
+   @Test
+   public void treeIsIdempotent() throws Exception
+   {
+      List<File> files = tree.generate(40);
+      updater.setThreads(4);
+      List<StampResult> first = updater.process(files);
+      assertEquals(files.size(), first.size());
+      assertEquals(40, HeaderStamperTest.count(first)[StampResult.Status.STAMPED.ordinal()]);
+
+      Map<File,byte[]> updated = SourceTree.snapshot(files);
+      List<StampResult> second = updater.process(files);
+      assertEquals(0, HeaderStamperTest.count(second)[StampResult.Status.STAMPED.ordinal()]);
+      assertEquals(0, HeaderStamperTest.count(second)[StampResult.Status.FAILED.ordinal()]);
+      for (File file : files)
+      {
+         assertTrue(file.getPath(), Arrays.equals(updated.get(file), SourceTree.read(file)));
+      }
+   }
+}
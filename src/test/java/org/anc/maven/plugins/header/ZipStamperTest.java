@@ -0,0 +1,209 @@
+/*-
+ * Copyright 2009 The American National Corpus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.anc.maven.plugins.header;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipStamperTest
+{
+   protected SourceTree tree;
+   protected HeaderStamper stamper;
+   protected Map<String,byte[]> entries;
+   protected File archive;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      tree = new SourceTree();
+      stamper = new HeaderStamper(SourceTree.NOTICE);
+      stamper.setCharset(SourceTree.UTF8);
+
+      entries = new HashMap<String,byte[]>();
+      entries.put("a/b/Deflated.java", bytes(tree.unstamped("a.b", "Deflated")));
+      entries.put("a/b/Crlf.java", bytes(tree.crlf("a.b", "Crlf")));
+      entries.put("a/b/Stamped.java", bytes(tree.stamped("a.b", "Stamped")));
+      entries.put("Default.java", bytes(tree.defaultPackage("Default")));
+      entries.put("a/b/Latin.java", bytes(tree.latin1("a.b", "Latin")));
+      entries.put("a/b/Large.java", bytes(tree.large("a.b", "Large", 20000)));
+      entries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(SourceTree.UTF8));
+
+      archive = new File(tree.getRoot(), "sources.jar");
+      ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+      try
+      {
+         for (String name : new String[] { "META-INF/MANIFEST.MF", "a/b/Deflated.java",
+               "a/b/Crlf.java", "a/b/Stamped.java", "Default.java", "a/b/Latin.java", "a/b/Large.java" })
+         {
+            out.putNextEntry(entry(name, entries.get(name), name.contains("Crlf")));
+            out.write(entries.get(name));
+            out.closeEntry();
+         }
+         // A stored entry as well as deflated ones.
+         byte[] stored = bytes(tree.unstamped("a.b", "Stored"));
+         entries.put("a/b/Stored.java", stored);
+         out.putNextEntry(entry("a/b/Stored.java", stored, true));
+         out.write(stored);
+         out.closeEntry();
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+
+   @After
+   public void tearDown()
+   {
+      tree.delete();
+   }
+
+   @Test
+   public void stampsSourceEntries() throws Exception
+   {
+      File output = new File(tree.getRoot(), "stamped.jar");
+      List<StampResult> results = new ZipStamper(stamper).process(archive, output);
+      assertEquals(7, results.size());
+      Map<String,StampResult.Status> status = statuses(results);
+      assertEquals(StampResult.Status.STAMPED, status.get("a/b/Deflated.java"));
+      assertEquals(StampResult.Status.STAMPED, status.get("a/b/Crlf.java"));
+      assertEquals(StampResult.Status.STAMPED, status.get("a/b/Stored.java"));
+      assertEquals(StampResult.Status.STAMPED, status.get("a/b/Large.java"));
+      assertEquals(StampResult.Status.CURRENT, status.get("a/b/Stamped.java"));
+      assertEquals(StampResult.Status.SKIPPED, status.get("Default.java"));
+      assertEquals(StampResult.Status.FAILED, status.get("a/b/Latin.java"));
+
+      ZipFile zip = new ZipFile(output);
+      try
+      {
+         assertEquals(entries.size(), zip.size());
+         for (String name : entries.keySet())
+         {
+            byte[] expected = entries.get(name);
+            if (status.get(name) == StampResult.Status.STAMPED)
+            {
+               String source = new String(expected, SourceTree.UTF8);
+               String eol = HeaderStamper.separator(source);
+               expected = (SourceTree.header(SourceTree.NOTICE, eol)
+                     + source.substring(HeaderStamper.findPackage(source))).getBytes(SourceTree.UTF8);
+            }
+            assertArrayEquals(name, expected, read(zip, name));
+         }
+      }
+      finally
+      {
+         zip.close();
+      }
+   }
+
+   @Test
+   public void secondPassIsCurrent() throws Exception
+   {
+      File once = new File(tree.getRoot(), "once.jar");
+      File twice = new File(tree.getRoot(), "twice.jar");
+      ZipStamper zipStamper = new ZipStamper(stamper);
+      zipStamper.process(archive, once);
+
+      Map<String,StampResult.Status> status = statuses(zipStamper.process(once, twice));
+      assertEquals(7, status.size());
+      for (Map.Entry<String,StampResult.Status> entry : status.entrySet())
+      {
+         assertTrue(entry.getKey(), entry.getValue() != StampResult.Status.STAMPED);
+      }
+      // Unchanged entries are copied raw, so the archive is identical.
+      assertArrayEquals(bytes(once), bytes(twice));
+   }
+
+   @Test
+   public void checkDoesNotWrite() throws Exception
+   {
+      File output = new File(tree.getRoot(), "checked.jar");
+      stamper.setCheck(true);
+      Map<String,StampResult.Status> status = statuses(new ZipStamper(stamper).process(archive, output));
+      assertEquals(StampResult.Status.STAMPED, status.get("a/b/Deflated.java"));
+      assertFalse(output.exists());
+   }
+
+   protected static ZipEntry entry(String name, byte[] content, boolean stored)
+   {
+      ZipEntry entry = new ZipEntry(name);
+      if (stored)
+      {
+         CRC32 crc = new CRC32();
+         crc.update(content, 0, content.length);
+         entry.setMethod(ZipEntry.STORED);
+         entry.setSize(content.length);
+         entry.setCompressedSize(content.length);
+         entry.setCrc(crc.getValue());
+      }
+      return entry;
+   }
+
+   protected static Map<String,StampResult.Status> statuses(List<StampResult> results)
+   {
+      Map<String,StampResult.Status> map = new HashMap<String,StampResult.Status>();
+      for (StampResult result : results)
+      {
+         map.put(result.getPath(), result.getStatus());
+      }
+      return map;
+   }
+
+   protected static byte[] bytes(File file) throws IOException
+   {
+      return SourceTree.read(file);
+   }
+
+   protected static byte[] read(ZipFile zip, String name) throws IOException
+   {
+      InputStream in = zip.getInputStream(zip.getEntry(name));
+      try
+      {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int n;
+         while ((n = in.read(buffer)) > 0)
+         {
+            bytes.write(buffer, 0, n);
+         }
+         return bytes.toByteArray();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+}